@@ -0,0 +1,610 @@
+package templating;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles the Twig templates of the application into Java classes
+ * implementing core.templating.CompiledView, plus a registry class keyed by
+ * the resource path of every template.
+ *
+ * Supported subset: {{ expression }}, {% if %} / {% elseif %} / {% else %} /
+ * {% endif %}, {% for value in expression %}, {% for key, value in expression %}
+ * / {% endfor %}, {# comments #} and whitespace control with "-". Expressions
+ * are variables, attributes (a.b), string and number literals, the length
+ * filter, comparisons, and, or, not and parentheses.
+ *
+ * @author Peibol
+ */
+public class TemplateCompiler {
+
+    public static final String PACKAGE = "core.templating.compiled";
+    public static final String REGISTRY = "CompiledViews";
+
+    private static final String RUNTIME = "TemplateRuntime";
+
+    private final File templatesDir;
+    private final String resourcePrefix;
+    private final File outputDir;
+
+    /**
+     * @param templatesDir   Folder with the templates
+     * @param resourcePrefix Classpath folder of the templates, views are
+     *                       requested as resourcePrefix/file
+     * @param outputDir      Root of the generated sources
+     */
+    public TemplateCompiler(File templatesDir, String resourcePrefix, File outputDir) {
+        this.templatesDir = templatesDir;
+        this.resourcePrefix = resourcePrefix;
+        this.outputDir = outputDir;
+    }
+
+    public void compile() throws IOException {
+
+        File packageDir = new File(outputDir, PACKAGE.replace('.', File.separatorChar));
+        if (!packageDir.isDirectory() && !packageDir.mkdirs()) {
+            throw new IOException("Cannot create " + packageDir);
+        }
+
+        // View path to class name, sorted so the output is stable
+        Map<String, String> views = new TreeMap<>();
+        File[] files = templatesDir.listFiles((dir, name) -> name.endsWith(".html"));
+
+        if (files != null) {
+            for (File file : files) {
+                String view = resourcePrefix + "/" + file.getName();
+                String className = className(file.getName());
+                String source = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+
+                write(new File(packageDir, className + ".java"), compileView(view, className, source));
+                views.put(view, className);
+            }
+        }
+
+        write(new File(packageDir, REGISTRY + ".java"), registry(views));
+    }
+
+    /**
+     * Generate the Java source of a single template
+     *
+     * @param view
+     * @param className
+     * @param source
+     * @return
+     */
+    public static String compileView(String view, String className, String source) {
+        return new ViewWriter(view, className).compile(tokenize(view, source));
+    }
+
+    private static String registry(Map<String, String> views) {
+
+        StringBuilder java = new StringBuilder();
+        java.append("package ").append(PACKAGE).append(";\n\n");
+        java.append("import java.util.Collections;\n");
+        java.append("import java.util.HashMap;\n");
+        java.append("import java.util.Map;\n\n");
+        java.append("import core.templating.CompiledView;\n\n");
+        java.append("// Generated by the compileTemplates task, do not edit\n");
+        java.append("public final class ").append(REGISTRY).append(" {\n\n");
+        java.append("    public static final Map<String, CompiledView> VIEWS;\n\n");
+        java.append("    static {\n");
+        java.append("        Map<String, CompiledView> views = new HashMap<>();\n");
+        for (Map.Entry<String, String> view : views.entrySet()) {
+            java.append("        views.put(").append(literal(view.getKey())).append(", new ").append(view.getValue()).append("());\n");
+        }
+        java.append("        VIEWS = Collections.unmodifiableMap(views);\n");
+        java.append("    }\n\n");
+        java.append("    private ").append(REGISTRY).append("() {\n\n    }\n");
+        java.append("}\n");
+        return java.toString();
+    }
+
+    private static void write(File file, String java) throws IOException {
+        Files.write(file.toPath(), java.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String className(String fileName) {
+
+        StringBuilder name = new StringBuilder();
+        boolean upper = true;
+
+        for (char c : fileName.substring(0, fileName.lastIndexOf('.')).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                name.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            } else {
+                upper = true;
+            }
+        }
+        if (name.length() == 0 || !Character.isLetter(name.charAt(0))) {
+            name.insert(0, "View");
+        }
+        return name.append("View").toString();
+    }
+
+    // ------------------------------------------------------------------
+    // Template tokens
+    // ------------------------------------------------------------------
+
+    private enum Kind {
+        TEXT, OUTPUT, CODE
+    }
+
+    private static final class Token {
+
+        private final Kind kind;
+        private final String content;
+        private final int line;
+
+        private Token(Kind kind, String content, int line) {
+            this.kind = kind;
+            this.content = content;
+            this.line = line;
+        }
+    }
+
+    private static List<Token> tokenize(String view, String source) {
+
+        List<Token> tokens = new ArrayList<>();
+        int position = 0;
+        int line = 1;
+        boolean trimNext = false;
+
+        while (position < source.length()) {
+
+            int open = nextTag(source, position);
+            String text = source.substring(position, open < 0 ? source.length() : open);
+
+            if (trimNext) {
+                text = text.replaceAll("^\\s+", "");
+            }
+            boolean trimPrevious = open >= 0 && source.startsWith("-", open + 2);
+            if (trimPrevious) {
+                text = text.replaceAll("\\s+$", "");
+            }
+            if (!text.isEmpty()) {
+                tokens.add(new Token(Kind.TEXT, text, line));
+            }
+
+            if (open < 0) {
+                break;
+            }
+            line += count(source, '\n', position, open);
+
+            char type = source.charAt(open + 1);
+            String closing = type == '{' ? "}}" : type == '%' ? "%}" : "#}";
+            int close = source.indexOf(closing, open + 2);
+            if (close < 0) {
+                throw error(view, line, "unclosed tag");
+            }
+
+            String content = source.substring(open + 2, close);
+            if (content.startsWith("-")) {
+                content = content.substring(1);
+            }
+            trimNext = content.endsWith("-");
+            if (trimNext) {
+                content = content.substring(0, content.length() - 1);
+            }
+
+            if (type == '{') {
+                tokens.add(new Token(Kind.OUTPUT, content.trim(), line));
+            } else if (type == '%') {
+                tokens.add(new Token(Kind.CODE, content.trim(), line));
+            }
+
+            line += count(source, '\n', open, close);
+            position = close + 2;
+        }
+
+        return tokens;
+    }
+
+    private static int nextTag(String source, int from) {
+        int position = source.indexOf('{', from);
+        while (position >= 0 && position + 1 < source.length()) {
+            char next = source.charAt(position + 1);
+            if (next == '{' || next == '%' || next == '#') {
+                return position;
+            }
+            position = source.indexOf('{', position + 1);
+        }
+        return -1;
+    }
+
+    private static int count(String source, char c, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static IllegalArgumentException error(String view, int line, String message) {
+        return new IllegalArgumentException(view + ":" + line + ": " + message);
+    }
+
+    // ------------------------------------------------------------------
+    // Java generation
+    // ------------------------------------------------------------------
+
+    private static final class ViewWriter {
+
+        private final String view;
+        private final String className;
+        private final List<String> texts = new ArrayList<>();
+        private final StringBuilder body = new StringBuilder();
+        private final Deque<String> blocks = new ArrayDeque<>();
+        private final Deque<Map<String, String>> scopes = new ArrayDeque<>();
+        private int indent = 2;
+        private int loops = 0;
+        private int line = 1;
+
+        private ViewWriter(String view, String className) {
+            this.view = view;
+            this.className = className;
+        }
+
+        private String compile(List<Token> tokens) {
+
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                line = token.line;
+
+                switch (token.kind) {
+                    case TEXT:
+                        emit("stream.write(TEXT_" + texts.size() + ");");
+                        texts.add(token.content);
+                        // The static head goes out before the model is evaluated
+                        if (i == 0 && tokens.size() > 1) {
+                            emit("stream.flush();");
+                        }
+                        break;
+                    case OUTPUT:
+                        emit(RUNTIME + ".write(stream, " + expression(token.content) + ");");
+                        break;
+                    case CODE:
+                        code(token.content);
+                        break;
+                }
+            }
+
+            if (!blocks.isEmpty()) {
+                throw error(view, line, "missing end" + blocks.peek());
+            }
+
+            StringBuilder java = new StringBuilder();
+            java.append("package ").append(PACKAGE).append(";\n\n");
+            java.append("import java.io.IOException;\n");
+            java.append("import java.io.OutputStream;\n");
+            java.append("import java.util.Map;\n\n");
+            java.append("import core.templating.CompiledView;\n");
+            java.append("import core.templating.TemplateRuntime;\n\n");
+            java.append("// Generated from ").append(view).append(" by the compileTemplates task, do not edit\n");
+            java.append("public final class ").append(className).append(" implements CompiledView {\n\n");
+            for (int i = 0; i < texts.size(); i++) {
+                java.append("    private static final byte[] TEXT_").append(i).append(" = ")
+                    .append(RUNTIME).append(".bytes(").append(literal(texts.get(i))).append(");\n");
+            }
+            if (!texts.isEmpty()) {
+                java.append("\n");
+            }
+            java.append("    public void render(Map<String, Object> model, OutputStream stream) throws IOException {\n");
+            java.append(body);
+            java.append("    }\n");
+            java.append("}\n");
+            return java.toString();
+        }
+
+        private void code(String content) {
+
+            String[] parts = content.split("\\s+", 2);
+            String tag = parts[0];
+            String argument = parts.length > 1 ? parts[1] : "";
+
+            switch (tag) {
+                case "if":
+                    emit("if (" + condition(argument) + ") {");
+                    blocks.push("if");
+                    indent++;
+                    break;
+                case "elseif":
+                    expectBlock("if", tag);
+                    indent--;
+                    emit("} else if (" + condition(argument) + ") {");
+                    indent++;
+                    break;
+                case "else":
+                    expectBlock("if", tag);
+                    indent--;
+                    emit("} else {");
+                    indent++;
+                    break;
+                case "endif":
+                    expectBlock("if", tag);
+                    blocks.pop();
+                    indent--;
+                    emit("}");
+                    break;
+                case "for":
+                    forLoop(argument);
+                    break;
+                case "endfor":
+                    expectBlock("for", tag);
+                    blocks.pop();
+                    scopes.pop();
+                    indent--;
+                    emit("}");
+                    break;
+                default:
+                    throw error(view, line, "unsupported tag " + tag);
+            }
+        }
+
+        private void forLoop(String argument) {
+
+            int in = argument.indexOf(" in ");
+            if (in < 0) {
+                throw error(view, line, "for without in");
+            }
+
+            String[] names = argument.substring(0, in).split(",");
+            String key = names.length == 2 ? names[0].trim() : null;
+            String value = names[names.length - 1].trim();
+            if (names.length > 2 || !isName(value) || (key != null && !isName(key))) {
+                throw error(view, line, "bad loop variables " + argument.substring(0, in));
+            }
+
+            String entry = "entry" + loops++;
+            emit("for (Map.Entry<Object, Object> " + entry + " : " + RUNTIME + ".entries(" + expression(argument.substring(in + 4)) + ")) {");
+            indent++;
+
+            Map<String, String> scope = new HashMap<>();
+            if (key != null) {
+                scope.put(key, "key" + (loops - 1));
+                emit("Object " + scope.get(key) + " = " + entry + ".getKey();");
+            }
+            scope.put(value, "value" + (loops - 1));
+            emit("Object " + scope.get(value) + " = " + entry + ".getValue();");
+
+            scopes.push(scope);
+            blocks.push("for");
+        }
+
+        private void expectBlock(String block, String tag) {
+            if (!block.equals(blocks.peek())) {
+                throw error(view, line, tag + " outside of " + block);
+            }
+        }
+
+        private void emit(String statement) {
+            for (int i = 0; i < indent; i++) {
+                body.append("    ");
+            }
+            body.append(statement).append('\n');
+        }
+
+        private String condition(String source) {
+            return RUNTIME + ".isTrue(" + expression(source) + ")";
+        }
+
+        private String expression(String source) {
+            ExpressionParser parser = new ExpressionParser(this, source);
+            String java = parser.parseOr();
+            if (!parser.atEnd()) {
+                throw error(view, line, "unexpected " + parser.peek() + " in " + source);
+            }
+            return java;
+        }
+
+        private String variable(String name) {
+            for (Map<String, String> scope : scopes) {
+                if (scope.containsKey(name)) {
+                    return scope.get(name);
+                }
+            }
+            return "model.get(" + literal(name) + ")";
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Expressions, every one compiles to a Java expression of type Object
+    // ------------------------------------------------------------------
+
+    private static final class ExpressionParser {
+
+        private final ViewWriter writer;
+        private final List<String> tokens = new ArrayList<>();
+        private int position = 0;
+
+        private ExpressionParser(ViewWriter writer, String source) {
+            this.writer = writer;
+
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"' || c == '\'') {
+                    int end = source.indexOf(c, i + 1);
+                    if (end < 0) {
+                        throw error(writer.view, writer.line, "unclosed string in " + source);
+                    }
+                    tokens.add(source.substring(i, end + 1));
+                    i = end + 1;
+                } else if (Character.isLetterOrDigit(c) || c == '_') {
+                    int start = i;
+                    while (i < source.length() && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_'
+                            || (source.charAt(i) == '.' && Character.isDigit(source.charAt(start)))))
+                    {
+                        i++;
+                    }
+                    tokens.add(source.substring(start, i));
+                } else if (i + 1 < source.length() && "==!=<=>=".contains(source.substring(i, i + 2)) && source.charAt(i + 1) == '=') {
+                    tokens.add(source.substring(i, i + 2));
+                    i += 2;
+                } else {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                }
+            }
+        }
+
+        private boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        private String peek() {
+            return atEnd() ? "" : tokens.get(position);
+        }
+
+        private String next() {
+            if (atEnd()) {
+                throw error(writer.view, writer.line, "unexpected end of expression");
+            }
+            return tokens.get(position++);
+        }
+
+        private String parseOr() {
+            String left = parseAnd();
+            while (peek().equals("or")) {
+                next();
+                left = "(Object) (" + test(left) + " || " + test(parseAnd()) + ")";
+            }
+            return left;
+        }
+
+        private String parseAnd() {
+            String left = parseNot();
+            while (peek().equals("and")) {
+                next();
+                left = "(Object) (" + test(left) + " && " + test(parseNot()) + ")";
+            }
+            return left;
+        }
+
+        private String parseNot() {
+            if (peek().equals("not")) {
+                next();
+                return "(Object) !" + test(parseNot());
+            }
+            return parseComparison();
+        }
+
+        private String parseComparison() {
+            String left = parseFiltered();
+            switch (peek()) {
+                case "==":
+                    next();
+                    return "(Object) " + RUNTIME + ".equal(" + left + ", " + parseFiltered() + ")";
+                case "!=":
+                    next();
+                    return "(Object) !" + RUNTIME + ".equal(" + left + ", " + parseFiltered() + ")";
+                case "<":
+                case ">":
+                case "<=":
+                case ">=":
+                    String operator = next();
+                    return "(Object) (" + RUNTIME + ".compare(" + left + ", " + parseFiltered() + ") " + operator + " 0)";
+                default:
+                    return left;
+            }
+        }
+
+        private String parseFiltered() {
+            String value = parsePrimary();
+            while (peek().equals("|")) {
+                next();
+                String filter = next();
+                if (!filter.equals("length")) {
+                    throw error(writer.view, writer.line, "unsupported filter " + filter);
+                }
+                value = "(Object) " + RUNTIME + ".length(" + value + ")";
+            }
+            return value;
+        }
+
+        private String parsePrimary() {
+
+            String token = next();
+            String value;
+
+            if (token.equals("(")) {
+                value = parseOr();
+                if (!next().equals(")")) {
+                    throw error(writer.view, writer.line, "missing )");
+                }
+            } else if (token.startsWith("\"") || token.startsWith("'")) {
+                value = "(Object) " + literal(token.substring(1, token.length() - 1));
+            } else if (Character.isDigit(token.charAt(0))) {
+                value = token.contains(".") ? "(Object) " + Double.parseDouble(token) : "(Object) " + Long.parseLong(token) + "L";
+            } else if (token.equals("true") || token.equals("false")) {
+                value = "(Object) " + token;
+            } else if (token.equals("null")) {
+                value = "(Object) null";
+            } else if (isName(token)) {
+                value = writer.variable(token);
+            } else {
+                throw error(writer.view, writer.line, "unexpected " + token);
+            }
+
+            while (peek().equals(".")) {
+                next();
+                String attribute = next();
+                if (!isName(attribute)) {
+                    throw error(writer.view, writer.line, "bad attribute " + attribute);
+                }
+                value = RUNTIME + ".attribute(" + value + ", " + literal(attribute) + ")";
+            }
+
+            return value;
+        }
+
+        private String test(String expression) {
+            return RUNTIME + ".isTrue(" + expression + ")";
+        }
+    }
+
+    private static boolean isName(String token) {
+        if (token.isEmpty() || !(Character.isLetter(token.charAt(0)) || token.charAt(0) == '_')) {
+            return false;
+        }
+        for (char c : token.toCharArray()) {
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String literal(String text) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -0,0 +1,128 @@
+package adapter.repository.relational;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.database.DatabaseRelational;
+import core.database.DatabaseSQLiteMemory;
+import core.database.Query;
+import core.database.SchemaMigrator;
+import domain.entity.Role;
+import domain.entity.User;
+
+/**
+ * Lookups done on every request on an in memory SQLite database with the
+ * schema of the first migration, without keys or indexes, and with the
+ * schema of the latest one
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserLookupBenchmark {
+
+    private static final Query COUNT_USERS_WITH_ROLE = Query.of("SELECT COUNT(*) FROM user_has_role WHERE fk_role_id = ?");
+
+    @Param({ "10000", "100000", "1000000" })
+    private int users;
+
+    @Param({ "1", "2" })
+    private int schema;
+
+    private DatabaseRelational db;
+    private UserRepositoryRelational userRepository;
+    private RoleRepositoryRelational roleRepository;
+    private int turn = 0;
+
+    @Setup
+    public void setUp() {
+
+        db = new DatabaseSQLiteMemory() {
+            protected boolean setUp() {
+                return new SchemaMigrator(this, getDialect()).migrate(schema);
+            }
+            protected long getPoolTimeout() { return 1000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 64; }
+        };
+
+        if (!db.connect()) {
+            throw new IllegalStateException("Database not available");
+        }
+
+        Query insertUser = Query.of("INSERT INTO users(user_name, user_password) VALUES(?, ?)");
+        Query insertRole = Query.of("INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(?, ?)");
+
+        db.startTransaction();
+        for (int i = 6; i < users; i++) {
+            Integer uid = db.insert(insertUser.bind("user" + i, "pass" + i));
+            for (int role = 1; role <= i % 4; role++) {
+                db.execute(insertRole.bind(uid, role + 1));
+            }
+        }
+        db.commit();
+        DatabaseRelational.release();
+
+        userRepository = new UserRepositoryRelational(db);
+        roleRepository = new RoleRepositoryRelational(db);
+    }
+
+    private int nextUser() {
+        turn = turn * 1103515245 + 12345;
+        return 6 + ((turn >>> 1) % (users - 6));
+    }
+
+    @Benchmark
+    public User login() {
+        try {
+            int i = nextUser();
+            User user = new User().setUsername("user" + i).setPassword("pass" + i);
+            userRepository.findUser(user);
+            return user;
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    public User findUserById() {
+        try {
+            User user = new User(nextUser());
+            userRepository.findUser(user);
+            return user;
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    public Role[] getRolesByUser() {
+        try {
+            return roleRepository.getRolesByUser(new User(nextUser()));
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    public Integer countUsersWithRole() {
+        try {
+            return db.selectOne(COUNT_USERS_WITH_ROLE.bind(turn++ % 3 + 2), row -> row.getInt(1));
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package adapter.repository.relational;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.database.DatabaseRelational;
+import core.database.DatabaseSQLiteMemory;
+import core.database.Query;
+import domain.entity.User;
+
+/**
+ * All the users with their roles on an in memory SQLite database, in a single
+ * joined query and, as it used to be done, in one query for the users plus
+ * one more per user for its roles. Both run on the same indexed tables
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRepositoryRelationalBenchmark {
+
+    private static final Query SELECT_USERS = Query.of("SELECT user_id, user_name FROM users");
+    private static final Query SELECT_USER_ROLES = Query.of("SELECT fk_role_id FROM user_has_role WHERE fk_user_id = ? ORDER BY fk_role_id ASC");
+
+    @Param({ "10000", "100000", "1000000" })
+    private int users;
+
+    private DatabaseRelational db;
+    private UserRepositoryRelational repository;
+
+    @Setup
+    public void setUp() {
+
+        db = new DatabaseSQLiteMemory() {
+            protected long getPoolTimeout() { return 1000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 64; }
+        };
+
+        if (!db.connect()) {
+            throw new IllegalStateException("Database not available");
+        }
+
+        // Same mix as the dump, some users with one role, some with several and some with none
+        Query insertUser = Query.of("INSERT INTO users(user_name, user_password) VALUES(?, ?)");
+        Query insertRole = Query.of("INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(?, ?)");
+
+        db.startTransaction();
+        for (int i = 6; i < users; i++) {
+            Integer uid = db.insert(insertUser.bind("user" + i, "pass" + i));
+            for (int role = 1; role <= i % 4; role++) {
+                db.execute(insertRole.bind(uid, role + 1));
+            }
+        }
+        db.commit();
+        DatabaseRelational.release();
+
+        repository = new UserRepositoryRelational(db);
+    }
+
+    @Benchmark
+    public User[] joined() {
+        try {
+            return repository.getAllUsers();
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    public User[] queryPerUser() {
+        try {
+            List<User> list = db.select(SELECT_USERS, row ->
+                new User()
+                    .setId(row.getInt("user_id"))
+                    .setUsername(row.getString("user_name"))
+            );
+            for (User user : list) {
+                List<Integer> roles = db.select(SELECT_USER_ROLES.bind(user.getId()), row -> row.getInt("fk_role_id"));
+                user.setRoles(roles.toArray(new Integer[roles.size()]));
+            }
+            return list.toArray(new User[list.size()]);
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package adapter.repository.relational;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.database.DatabaseRelational;
+import core.database.DatabaseSQLiteMemory;
+import core.database.Query;
+import domain.entity.User;
+
+/**
+ * Updates of a user with four roles in a transaction, as a PUT does, either
+ * leaving the roles as they are or replacing one of them. The roles are
+ * written as a diff by the repository, or rewritten from scratch as they used
+ * to be. The rows written are counted from SQLite's total_changes, the update
+ * of the user row itself included, events are totals so the rows written per
+ * update are rowsWritten divided by updates
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRoleWritesBenchmark {
+
+    private static final Query TOTAL_CHANGES = Query.of("SELECT total_changes()");
+    private static final Query UPDATE_USER = Query.of("UPDATE users SET user_name = ?, user_password = ? WHERE user_id = ?");
+    private static final Query DELETE_USER_ROLES = Query.of("DELETE FROM user_has_role WHERE fk_user_id = ?");
+    private static final Query INSERT_USER_ROLE = Query.of("INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(?, ?)");
+
+    private static final Integer[][] UNCHANGED = { { 1, 2, 3, 4 }, { 1, 2, 3, 4 } };
+    private static final Integer[][] ONE_CHANGED = { { 1, 2, 3, 4 }, { 1, 2, 3, 5 } };
+
+    @Param({ "unchanged", "oneChanged" })
+    private String roles;
+
+    private DatabaseRelational db;
+    private UserRepositoryRelational repository;
+    private Integer[][] alternatives;
+    private int uid;
+    private int turn = 0;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Writes {
+
+        public long rowsWritten;
+        public long updates;
+        private int before;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rowsWritten = 0;
+            updates = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+
+        db = new DatabaseSQLiteMemory() {
+            protected long getPoolTimeout() { return 1000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 64; }
+        };
+
+        if (!db.connect()) {
+            throw new IllegalStateException("Database not available");
+        }
+
+        repository = new UserRepositoryRelational(db);
+        alternatives = roles.equals("unchanged") ? UNCHANGED : ONE_CHANGED;
+        uid = repository.insertUser(new User().setUsername("bench").setPassword("pass").setRoles(alternatives[0]));
+        DatabaseRelational.release();
+    }
+
+    @Benchmark
+    public boolean diff(Writes writes) {
+        try {
+            writes.before = db.selectOne(TOTAL_CHANGES, row -> row.getInt(1));
+            db.startTransaction();
+            boolean done = repository.updateUser(new User(uid, "bench", "pass", next()));
+            db.commit();
+            writes.rowsWritten += db.selectOne(TOTAL_CHANGES, row -> row.getInt(1)) - writes.before;
+            writes.updates++;
+            return done;
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    public boolean rewrite(Writes writes) {
+        try {
+            writes.before = db.selectOne(TOTAL_CHANGES, row -> row.getInt(1));
+            db.startTransaction();
+            boolean done = db.execute(UPDATE_USER.bind("bench", "pass", uid)) && db.execute(DELETE_USER_ROLES.bind(uid));
+            for (Integer roleId : next()) {
+                db.insert(INSERT_USER_ROLE.bind(uid, roleId));
+            }
+            db.commit();
+            writes.rowsWritten += db.selectOne(TOTAL_CHANGES, row -> row.getInt(1)) - writes.before;
+            writes.updates++;
+            return done;
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    private Integer[] next() {
+        return alternatives[turn++ & 1];
+    }
+}
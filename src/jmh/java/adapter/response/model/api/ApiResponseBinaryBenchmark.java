@@ -0,0 +1,121 @@
+package adapter.response.model.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import adapter.response.serializer.BinaryFormat;
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+import domain.entity.Role;
+import domain.entity.User;
+
+/**
+ * Encoding and decoding a large user collection as Json, CBOR and
+ * MessagePack, the size of each encoding is printed on setup
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiResponseBinaryBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int users;
+
+    private ApiResponseUserCollection collection;
+    private byte[] json;
+    private byte[] cbor;
+    private byte[] msgPack;
+
+    private final OutputStream sink = new OutputStream() {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws Exception {
+
+        UserObject[] objects = new UserObject[users];
+        for (int i = 0; i < users; i++) {
+            objects[i] = new User(i + 1, "user" + (i + 1), new Integer[] { 1, i % 3 + 2 });
+        }
+
+        RoleObject[] roles = {
+            new Role(1, "ADMIN", null),
+            new Role(2, "PAGE_1", "page_1"),
+            new Role(3, "PAGE_2", "page_2"),
+            new Role(4, "PAGE_3", "page_3")
+        };
+
+        collection = new ApiResponseUserCollection(objects, roles);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        collection.writeJson(output);
+        json = output.toByteArray();
+
+        output.reset();
+        collection.writeCbor(output);
+        cbor = output.toByteArray();
+
+        output.reset();
+        collection.writeMsgPack(output);
+        msgPack = output.toByteArray();
+
+        System.out.println("\nBytes for " + users + " users: json " + json.length + ", cbor " + cbor.length + ", msgpack " + msgPack.length);
+    }
+
+    @Benchmark
+    public void encodeJson() throws Exception {
+        collection.writeJson(sink);
+    }
+
+    @Benchmark
+    public void encodeCbor() throws Exception {
+        collection.writeCbor(sink);
+    }
+
+    @Benchmark
+    public void encodeMsgPack() throws Exception {
+        collection.writeMsgPack(sink);
+    }
+
+    @Benchmark
+    public ApiResponseUserCollection decodeJson() {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8);
+        return ApiResponse.getGson().fromJson(reader, ApiResponseUserCollection.class);
+    }
+
+    @Benchmark
+    public ApiResponseUserCollection decodeCbor() throws Exception {
+        return ApiResponseUserCollection.readBinary(BinaryFormat.CBOR.createInput(cbor));
+    }
+
+    @Benchmark
+    public ApiResponseUserCollection decodeMsgPack() throws Exception {
+        return ApiResponseUserCollection.readBinary(BinaryFormat.MSGPACK.createInput(msgPack));
+    }
+}
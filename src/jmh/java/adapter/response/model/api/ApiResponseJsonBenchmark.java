@@ -0,0 +1,78 @@
+package adapter.response.model.api;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import adapter.response.model.UserModel;
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+import domain.entity.Role;
+
+/**
+ * Json throughput of the API models, a new reflective Gson per call as the
+ * controllers used to do against the shared Gson with hand written adapters
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiResponseJsonBenchmark {
+
+    @Param({ "1", "100" })
+    public int users;
+
+    private ApiResponseUserCollection collection;
+    private final String body = "{\"username\":\"user\",\"password\":\"pass\",\"roles\":[1,2,3]}";
+
+    @Setup
+    public void setUp() {
+
+        UserObject[] userObjects = new UserObject[users];
+        for (int i = 0; i < users; i++) {
+            userObjects[i] = new UserModel(i + 1, "user" + i, null, new Integer[] { 1, 2 });
+        }
+
+        RoleObject[] roles = {
+            new Role(1, "ADMIN", null),
+            new Role(2, "PAGE_1", "page_1"),
+            new Role(3, "PAGE_2", "page_2")
+        };
+
+        collection = new ApiResponseUserCollection(userObjects, roles);
+    }
+
+    @Benchmark
+    public String writeCollectionReflective() {
+        return new Gson().toJson(collection);
+    }
+
+    @Benchmark
+    public String writeCollectionAdapters() {
+        return collection.getJson();
+    }
+
+    @Benchmark
+    public UserModel readUserReflective() {
+        return new Gson().fromJson(body, UserModel.class);
+    }
+
+    @Benchmark
+    public UserModel readUserAdapters() {
+        return ApiResponse.getGson().fromJson(body, UserModel.class);
+    }
+}
@@ -0,0 +1,102 @@
+package adapter.response.model.api;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+import domain.entity.Role;
+import domain.entity.User;
+
+/**
+ * A collection of 100 users encoded the way the API used to send it, as a
+ * String then bytes, and written straight to the response stream. Run with
+ * -prof gc to compare the allocation per response
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiResponseStreamBenchmark {
+
+    private static final int USERS = 100;
+
+    private UserObject[] users;
+    private RoleObject[] roles;
+    private CountingOutputStream sink;
+
+    /**
+     * Stands for the socket, counts the bytes so the work is not optimised away
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+
+        users = new UserObject[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new User(i + 1, "user" + (i + 1), new Integer[] { 1, i % 3 + 2 });
+        }
+
+        roles = new RoleObject[] {
+            new Role(1, "ADMIN", null),
+            new Role(2, "PAGE_1", "page_1"),
+            new Role(3, "PAGE_2", "page_2"),
+            new Role(4, "PAGE_3", "page_3")
+        };
+
+        sink = new CountingOutputStream();
+        ApiResponse.preloadXml();
+    }
+
+    @Benchmark
+    public long jsonString() throws Exception {
+        sink.write(new ApiResponseUserCollection(users, roles).getJson().getBytes(StandardCharsets.UTF_8));
+        return sink.count;
+    }
+
+    @Benchmark
+    public long jsonStream() throws Exception {
+        new ApiResponseUserCollection(users, roles).writeJson(sink);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long xmlString() throws Exception {
+        sink.write(new ApiResponseUserCollection(users, roles).getXml().getBytes(StandardCharsets.UTF_8));
+        return sink.count;
+    }
+
+    @Benchmark
+    public long xmlStream() throws Exception {
+        new ApiResponseUserCollection(users, roles).writeXml(sink);
+        return sink.count;
+    }
+}
@@ -0,0 +1,71 @@
+package adapter.response.model.api;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import adapter.response.model.UserModel;
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+import domain.entity.Role;
+
+/**
+ * Latency of a single user resource as XML, with a new JAXB context per call
+ * as getXml used to do and with the cached context and pooled marshallers,
+ * Json as the reference
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiResponseXmlBenchmark {
+
+    private ApiResponseUserResource resource;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        UserObject user = new UserModel(1, "admin", null, new Integer[] { 1, 2 });
+        RoleObject[] roles = {
+            new Role(1, "ADMIN", null),
+            new Role(2, "PAGE_1", "page_1")
+        };
+
+        resource = new ApiResponseUserResource(user, roles);
+        ApiResponse.preloadXml();
+    }
+
+    @Benchmark
+    public String xmlNewContext() throws Exception {
+        Marshaller marshaller = JAXBContext.newInstance(ApiResponseUserResource.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(resource, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String xmlPooled() throws Exception {
+        return resource.getXml();
+    }
+
+    @Benchmark
+    public String json() {
+        return resource.getJson();
+    }
+}
@@ -0,0 +1,110 @@
+package adapter.response.serializer;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+import domain.entity.Role;
+import domain.entity.User;
+
+/**
+ * The user collection encoded from scratch and assembled from cached
+ * fragments, in the changed cases one user is modified between two calls
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserFragmentCacheBenchmark {
+
+    @Param({ "10000" })
+    private int users;
+
+    private UserObject[] objects;
+    private RoleObject[] roles;
+    private UserFragmentCache cache;
+    private int changes = 0;
+
+    private final OutputStream sink = new OutputStream() {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws Exception {
+
+        objects = new UserObject[users];
+        for (int i = 0; i < users; i++) {
+            objects[i] = new User(i + 1, "user" + (i + 1), new Integer[] { 1, i % 3 + 2 });
+        }
+
+        roles = new RoleObject[] {
+            new Role(1, "ADMIN", null),
+            new Role(2, "PAGE_1", "page_1"),
+            new Role(3, "PAGE_2", "page_2"),
+            new Role(4, "PAGE_3", "page_3")
+        };
+
+        cache = new UserFragmentCache(users);
+        UserApiJsonSerializer.writeCollection(objects, roles, sink, cache);
+        UserApiXmlSerializer.writeCollection(objects, roles, sink, true, cache);
+    }
+
+    private void changeOneUser() {
+        int index = changes++ % users;
+        objects[index] = new User(index + 1, "user" + (index + 1) + "_" + changes, new Integer[] { 1 });
+    }
+
+    @Benchmark
+    public void jsonEncoded() throws Exception {
+        UserApiJsonSerializer.writeCollection(objects, roles, sink, null);
+    }
+
+    @Benchmark
+    public void jsonCached() throws Exception {
+        UserApiJsonSerializer.writeCollection(objects, roles, sink, cache);
+    }
+
+    @Benchmark
+    public void jsonCachedOneChanged() throws Exception {
+        changeOneUser();
+        UserApiJsonSerializer.writeCollection(objects, roles, sink, cache);
+    }
+
+    @Benchmark
+    public void xmlEncoded() throws Exception {
+        UserApiXmlSerializer.writeCollection(objects, roles, sink, true, null);
+    }
+
+    @Benchmark
+    public void xmlCached() throws Exception {
+        UserApiXmlSerializer.writeCollection(objects, roles, sink, true, cache);
+    }
+
+    @Benchmark
+    public void xmlCachedOneChanged() throws Exception {
+        changeOneUser();
+        UserApiXmlSerializer.writeCollection(objects, roles, sink, true, cache);
+    }
+}
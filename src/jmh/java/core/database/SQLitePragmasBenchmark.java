@@ -0,0 +1,154 @@
+package core.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import adapter.repository.relational.UserRepositoryRelational;
+import domain.entity.User;
+
+/**
+ * Mixed API load on a file based SQLite database, six threads looking users
+ * up while two update them in a transaction as a PUT does, with the SQLite
+ * defaults and with the pragmas shipped in app.properties. Updates which
+ * could not get the database in time are counted as failed
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class SQLitePragmasBenchmark {
+
+    private static final int USERS = 10000;
+
+    @Param({ "default", "tuned" })
+    private String pragmas;
+
+    private File file;
+    private DatabaseRelational db;
+    private UserRepositoryRelational users;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Updates {
+
+        public long failed;
+        private int turn;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failed = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lookups {
+        private int turn;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+
+        file = File.createTempFile("pragmas", ".db");
+        file.delete();
+
+        Map<String, String> settings = new LinkedHashMap<>();
+        if (pragmas.equals("tuned")) {
+            settings.put("journal_mode", "WAL");
+            settings.put("synchronous", "NORMAL");
+            settings.put("mmap_size", "268435456");
+            settings.put("cache_size", "-16384");
+            settings.put("temp_store", "MEMORY");
+            settings.put("busy_timeout", "5000");
+        }
+
+        db = new DatabaseSQLite() {
+            protected String getUrl() { return "jdbc:sqlite:" + file.getPath(); }
+            protected Map<String, String> getPragmas() { return Collections.unmodifiableMap(settings); }
+            protected int getMinPoolSize() { return 1; }
+            protected int getMaxPoolSize() { return 8; }
+            protected long getPoolTimeout() { return 5000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 64; }
+        };
+
+        if (!db.connect()) {
+            throw new IllegalStateException("Database not available");
+        }
+
+        Query insertUser = Query.of("INSERT INTO users(user_name, user_password) VALUES(?, ?)");
+        Query insertRole = Query.of("INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(?, ?)");
+
+        db.startTransaction();
+        for (int i = 6; i < USERS; i++) {
+            Integer uid = db.insert(insertUser.bind("user" + i, "pass" + i));
+            db.execute(insertRole.bind(uid, i % 4 + 1));
+        }
+        db.commit();
+        DatabaseRelational.release();
+
+        users = new UserRepositoryRelational(db);
+    }
+
+    @TearDown
+    public void tearDown() {
+        DatabaseRelational.disconnect();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        file.delete();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public User lookup(Lookups lookups) {
+        try {
+            User user = new User(lookups.turn++ % USERS + 1);
+            users.findUser(user);
+            return user;
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public boolean update(Updates updates) {
+        try {
+            // Users inserted by the set up, user i has the id i + 1
+            int uid = (updates.turn++ * 7919) % (USERS - 6) + 7;
+            boolean done = db.startTransaction()
+                && users.updateUser(new User(uid, "user" + (uid - 1), "pass" + updates.turn, new Integer[] { updates.turn % 4 + 1 }))
+                && db.commit();
+            if (!done) {
+                updates.failed++;
+            }
+            return done;
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+}
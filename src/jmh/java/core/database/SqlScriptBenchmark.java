@@ -0,0 +1,120 @@
+package core.database;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Helper;
+
+/**
+ * Seeding an in memory SQLite database from a dump of users and their roles,
+ * in a single transaction, the way the dump used to be loaded, as a string
+ * split by a regular expression and run statement by statement, and
+ * streaming it through the script reader with the inserts folded into
+ * inserts of many rows and batched. The dump has no semicolons within
+ * strings or comments, the regular expression would split the statements
+ * there
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SqlScriptBenchmark {
+
+    @Param({ "100000", "1000000" })
+    private int users;
+
+    private File dump;
+    private DatabaseRelational db;
+
+    @Setup(Level.Trial)
+    public void writeDump() throws IOException {
+
+        dump = File.createTempFile("seed", ".sql");
+        try (PrintWriter out = new PrintWriter(dump, "UTF-8")) {
+            out.println("-- Seed of " + users + " users, one role each");
+            for (int i = 0; i < users; i++) {
+                out.println("INSERT INTO users(user_name, user_password) VALUES('seed" + i + "', 'it''s a secret " + i + "');");
+            }
+            for (int i = 0; i < users; i++) {
+                out.println("INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(" + (i + 7) + ", " + (i % 4 + 1) + ");");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDump() {
+        dump.delete();
+    }
+
+    @Setup(Level.Iteration)
+    public void connect() {
+
+        db = new DatabaseSQLiteMemory() {
+            protected long getPoolTimeout() { return 1000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 16; }
+        };
+
+        if (!db.connect()) {
+            throw new IllegalStateException("Database not available");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void disconnect() {
+        DatabaseRelational.disconnect();
+    }
+
+    @Benchmark
+    public boolean regexSplit() throws IOException, SQLException {
+        try (InputStream stream = new FileInputStream(dump)) {
+            String script = Helper.convertInputStreamToString(stream);
+
+            Connection conn = db.connection();
+            try (Statement stmt = conn.createStatement()) {
+                db.startTransaction();
+                for (String sql : Helper.list(script, "([^;]+;)")) {
+                    stmt.execute(sql);
+                }
+                return db.commit();
+            }
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    public boolean streamed() throws IOException {
+        try (Reader script = new InputStreamReader(new FileInputStream(dump), StandardCharsets.UTF_8)) {
+            return db.startTransaction() && db.executeScript(script) && db.commit();
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+}
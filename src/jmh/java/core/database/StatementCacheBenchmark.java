@@ -0,0 +1,75 @@
+package core.database;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import adapter.repository.relational.UserRepositoryRelational;
+import domain.entity.User;
+
+/**
+ * Repository lookups on an in memory SQLite database, preparing every
+ * statement from scratch and taking them from the statement cache. Each
+ * parameter runs in a fork of its own, so every run gets its own pool
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatementCacheBenchmark {
+
+    @Param({ "0", "64" })
+    private int cacheSize;
+
+    private UserRepositoryRelational users;
+    private int uid = 0;
+
+    @Setup
+    public void setUp() {
+
+        DatabaseRelational db = new DatabaseSQLiteMemory() {
+            protected long getPoolTimeout() { return 1000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return cacheSize; }
+        };
+
+        if (!db.connect()) {
+            throw new IllegalStateException("Database not available");
+        }
+        users = new UserRepositoryRelational(db);
+    }
+
+    // Connections go back to the pool after every call, as after a request
+
+    @Benchmark
+    public User findUserById() {
+        try {
+            User user = new User(uid++ % 6 + 1);
+            users.findUser(user);
+            return user;
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+
+    @Benchmark
+    public User[] getAllUsers() {
+        try {
+            return users.getAllUsers();
+        } finally {
+            DatabaseRelational.release();
+        }
+    }
+}
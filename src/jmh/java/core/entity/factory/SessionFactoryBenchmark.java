@@ -0,0 +1,44 @@
+package core.entity.factory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.entity.Session;
+import core.session.SessionStoreMemory;
+
+/**
+ * Login storm, 64 threads creating sessions at the same time
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class SessionFactoryBenchmark {
+
+    private final SessionStoreMemory store = new SessionStoreMemory();
+
+    @Benchmark
+    public Session createToken() {
+        return SessionFactory.create(1);
+    }
+
+    @Benchmark
+    public Session createAndStoreSession() {
+        Session session = store.create(1);
+        store.remove(session);
+        return session;
+    }
+}
@@ -0,0 +1,93 @@
+package core.templating;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rendering cost of the same views with every template engine, the DEFAULT
+ * engine only replaces placeholders and leaves Twig tags as they are
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateEngineBenchmark {
+
+    @Param({ "COMPILED", "TWIG", "DEFAULT" })
+    public String engine;
+
+    private TemplateEngine templateEngine;
+    private final Map<String, Object> login = new HashMap<>();
+    private final Map<String, Object> welcome = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+
+        switch (TemplateEngine.Type.valueOf(engine)) {
+            case COMPILED: templateEngine = new TemplateParserCompiled(); break;
+            case TWIG: templateEngine = new TemplateParserTwig(); break;
+            default: templateEngine = new TemplateParserDefault();
+        }
+
+        login.put("page", "2");
+
+        Map<String, Object> roles = new LinkedHashMap<>();
+        roles.put("ADMIN", 0);
+        roles.put("PAGE_1", 1);
+        roles.put("PAGE_2", 2);
+        roles.put("PAGE_3", 3);
+        welcome.put("user_name", "admin");
+        welcome.put("roles", roles);
+
+        templateEngine.preload("templates/login.html");
+        templateEngine.preload("templates/welcome.html");
+    }
+
+    @Benchmark
+    public void renderLogin(Blackhole blackhole) throws IOException {
+        templateEngine.render("templates/login.html", login, new BlackholeOutputStream(blackhole));
+    }
+
+    @Benchmark
+    public void renderWelcome(Blackhole blackhole) throws IOException {
+        templateEngine.render("templates/welcome.html", welcome, new BlackholeOutputStream(blackhole));
+    }
+
+    private static final class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        private BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -13,6 +13,8 @@ import adapter.controller.Controller;
 
 import adapter.response.model.api.ApiResponse;
 import adapter.response.model.api.ApiResponseError;
+import adapter.response.serializer.BinaryFormat;
+import adapter.response.serializer.BinaryInput;
 
 /**
  * Base controller for the REST API
@@ -23,7 +25,9 @@ abstract public class ApiController extends Controller {
             "*/*",
             "application/*",
             "application/json",
-            "application/xml"
+            "application/xml",
+            "application/cbor",
+            "application/x-msgpack"
     };
 
     /**
@@ -105,18 +109,51 @@ abstract public class ApiController extends Controller {
             case "*/*":
             case "application/*":
             case "application/json":
-                httpResponse = new HttpResponse(httpCode, response.getJson());
+                httpResponse = new HttpResponse(httpCode, response::writeJson);
                 httpResponse.setHeader("Content-Type", "application/json");
                 return httpResponse;
             case "application/xml":
-                httpResponse = new HttpResponse(httpCode, response.getXml());
+                httpResponse = new HttpResponse(httpCode, response::writeXml);
                 httpResponse.setHeader("Content-Type", "application/xml");
                 return httpResponse;
+            case "application/cbor":
+                httpResponse = new HttpResponse(httpCode, response::writeCbor);
+                httpResponse.setHeader("Content-Type", "application/cbor");
+                return httpResponse;
+            case "application/x-msgpack":
+                httpResponse = new HttpResponse(httpCode, response::writeMsgPack);
+                httpResponse.setHeader("Content-Type", "application/x-msgpack");
+                return httpResponse;
         }
 
         return new HttpResponse(HttpURLConnection.HTTP_NOT_ACCEPTABLE);
     }
 
+    /**
+     * Reader for the request body when its Content-Type is one of the binary
+     * media types, null when the body is Json
+     *
+     * @param request
+     * @return
+     */
+    protected BinaryInput getBinaryBody(HttpRequest request)
+    {
+        String contentType = request.getHeaders().getFirst("Content-Type");
+
+        if (contentType == null) {
+            return null;
+        }
+
+        switch (contentType.split(";")[0].trim().toLowerCase()) {
+            case "application/cbor":
+                return BinaryFormat.CBOR.createInput(request.getRawBody());
+            case "application/x-msgpack":
+                return BinaryFormat.MSGPACK.createInput(request.getRawBody());
+        }
+
+        return null;
+    }
+
     /**
      * Handler for Api requests, diverts requests to appropriate method of the controller
      * 
@@ -153,7 +190,7 @@ abstract public class ApiController extends Controller {
                     case "GET":
                         return GET(request, resId);
                     case "PUT":
-                        return PUT(request, authUserId, resId, request.getBody());
+                        return PUT(request, authUserId, resId);
                     case "DELETE":
                         return DELETE(request, authUserId, resId);
                 }
@@ -164,7 +201,7 @@ abstract public class ApiController extends Controller {
                     case "GET":
                         return GET(request);
                     case "POST":
-                        return POST(request, authUserId, request.getBody());
+                        return POST(request, authUserId);
                 }
             }
         } else {
@@ -180,7 +217,7 @@ abstract public class ApiController extends Controller {
 
     protected abstract HttpResponse GET(HttpRequest request) throws Exception;
     protected abstract HttpResponse GET(HttpRequest request, Integer resId) throws Exception;
-    protected abstract HttpResponse POST(HttpRequest request, Integer authUserId, String body) throws Exception;
-    protected abstract HttpResponse PUT(HttpRequest request, Integer authUserId, Integer resId, String body) throws Exception;
+    protected abstract HttpResponse POST(HttpRequest request, Integer authUserId) throws Exception;
+    protected abstract HttpResponse PUT(HttpRequest request, Integer authUserId, Integer resId) throws Exception;
     protected abstract HttpResponse DELETE(HttpRequest request, Integer authUserId, Integer resId) throws Exception;
 }
@@ -1,10 +1,13 @@
 package adapter.controller.api;
 
 import adapter.response.model.UserModel;
+import adapter.response.model.api.ApiResponse;
 import adapter.response.model.api.ApiResponseError;
 import adapter.response.model.api.ApiResponseUserCollection;
 import adapter.response.model.api.ApiResponseUserResource;
-import com.google.gson.Gson;
+import adapter.response.serializer.BinaryInput;
+import adapter.response.serializer.DecodingException;
+import adapter.response.serializer.UserApiBinarySerializer;
 import com.google.gson.JsonSyntaxException;
 import core.Server;
 import core.database.Database;
@@ -114,15 +117,13 @@ public class UserController extends ApiController{
      *
      * @param request
      * @param authUserId - User that is creating a new user
-     * @param body - Json
      * @return
      * @throws Exception
      */
-    protected HttpResponse POST(HttpRequest request, Integer authUserId, String body) throws Exception
+    protected HttpResponse POST(HttpRequest request, Integer authUserId) throws Exception
     {
         try {
-            Gson gson = new Gson();
-            UserModel userData = gson.fromJson(body, UserModel.class);
+            UserModel userData = readUser(request);
 
             Database db = Server.getDatabase();
             db.startTransaction();
@@ -171,6 +172,13 @@ public class UserController extends ApiController{
                 new ApiResponseError("Json syntax")
             );
         }
+        catch (DecodingException e) {
+            return getResponse(
+                request,
+                HttpURLConnection.HTTP_BAD_REQUEST,
+                new ApiResponseError("Malformed request body: " + e.getMessage())
+            );
+        }
         catch (Exception e) {
             e.printStackTrace(System.out);
             return getResponse(
@@ -187,15 +195,13 @@ public class UserController extends ApiController{
      * @param request
      * @param authUserId - User that is updating
      * @param refUserId - Id of the User resource that is to be updated
-     * @param body - Json
      * @return
      * @throws Exception
      */
-    protected HttpResponse PUT(HttpRequest request, Integer authUserId, Integer refUserId, String body) throws Exception
+    protected HttpResponse PUT(HttpRequest request, Integer authUserId, Integer refUserId) throws Exception
     {
         try {
-            Gson gson = new Gson();
-            UserModel user = gson.fromJson(body, UserModel.class);
+            UserModel user = readUser(request);
 
             Database db = Server.getDatabase();
             db.startTransaction();
@@ -209,6 +215,7 @@ public class UserController extends ApiController{
             {
                 case USER_UPDATED_SUCCESSFULLY:
                     db.commit();
+                    Server.bumpUserVersion(refUserId);
                     return new HttpResponse(HttpURLConnection.HTTP_NO_CONTENT);
 
                 case NOT_AUTHORISED:
@@ -250,6 +257,13 @@ public class UserController extends ApiController{
                 new ApiResponseError("Json syntax")
             );
         }
+        catch (DecodingException e) {
+            return getResponse(
+                request,
+                HttpURLConnection.HTTP_BAD_REQUEST,
+                new ApiResponseError("Malformed request body: " + e.getMessage())
+            );
+        }
         catch (Exception e) {
             e.printStackTrace(System.out);
             return getResponse(
@@ -260,6 +274,29 @@ public class UserController extends ApiController{
         }
     }
 
+    /**
+     * User sent in the request body, in Json or in the binary encoding named
+     * by the Content-Type
+     *
+     * @param request
+     * @return
+     * @throws DecodingException
+     */
+    private UserModel readUser(HttpRequest request) throws DecodingException
+    {
+        BinaryInput input = getBinaryBody(request);
+
+        if (input == null) {
+            return ApiResponse.getGson().fromJson(request.getBody(), UserModel.class);
+        }
+
+        UserModel user = UserApiBinarySerializer.readUser(input);
+        if (!input.isFinished()) {
+            throw new DecodingException("Unexpected data after the user");
+        }
+        return user;
+    }
+
     /**
      * Remove a user resource
      *
@@ -283,6 +320,7 @@ public class UserController extends ApiController{
             {
                 case USER_DELETED_SUCCESSFULLY:
                     db.commit();
+                    Server.bumpUserVersion(refUserId);
                     return new HttpResponse(HttpURLConnection.HTTP_NO_CONTENT);
 
                 case NOT_AUTHORISED:
@@ -75,11 +75,10 @@ public class ApplicationController extends Controller {
 
                 if (refUserId != null) {
                     session = Server.createSession(refUserId);
+                    loadProfile(session);
 
                     if (params.containsKey("page")) {
-                        UsecasePage usecasePage = Server.getInstance(UsecasePage.class);
-                        usecasePage.setRefUserId(refUserId);
-                        usecasePage.setPage(params.get("page") == null ? null : Integer.parseInt(params.get("page")));
+                        UsecasePage usecasePage = getUsecasePage(session, params.get("page"));
 
                         switch(usecasePage.execute())
                         {
@@ -125,7 +124,7 @@ public class ApplicationController extends Controller {
     public ApplicationResponse logout(HttpRequest request, Session session) {
 
         if (session != null) {
-            Server.removeSession(session.getSessionToken());
+            Server.removeSession(session);
         }
 
         return new ApplicationResponse()
@@ -146,34 +145,26 @@ public class ApplicationController extends Controller {
 
         if (session != null)
         {
-            UsecaseWelcome usecase = Server.getInstance(UsecaseWelcome.class);
-            usecase.setRefUserId(session.getUserId());
-
-            switch(usecase.execute())
-            {
-                case USER_RETRIEVED_SUCCESSFULLY:
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("user_name", usecase.getUsername());
-
-                    if (usecase.getRoles() != null) {
-                        Map<String, String> roles = new HashMap<>();
-                        Arrays.stream(usecase.getRoles()).forEach((role)-> roles.put(role.getName(), role.getPage()));
-                        data.put("roles", roles);
-                    }
-
-                    return new ApplicationResponse()
-                        .setResponseCode(ApplicationResponse.RESPONSE_OK)
-                        .setView(ApplicationResponse.TEMPLATE_WELCOME)
-                        .setData(data);
+            if (loadProfile(session)) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("user_name", session.getUsername());
 
-                case USER_NOT_FOUND:
-                default:
-                    Server.removeSession(session.getSessionToken());
-                    return new ApplicationResponse()
-                        .setResponseCode(ApplicationResponse.RESPONSE_REDIRECT)
-                        .setLocation("/");
+                if (session.getRoles() != null) {
+                    Map<String, String> roles = new HashMap<>();
+                    Arrays.stream(session.getRoles()).forEach((role)-> roles.put(role.getName(), role.getPage()));
+                    data.put("roles", roles);
+                }
 
+                return new ApplicationResponse()
+                    .setResponseCode(ApplicationResponse.RESPONSE_OK)
+                    .setView(ApplicationResponse.TEMPLATE_WELCOME)
+                    .setData(data);
             }
+
+            Server.removeSession(session);
+            return new ApplicationResponse()
+                .setResponseCode(ApplicationResponse.RESPONSE_REDIRECT)
+                .setLocation("/");
         }
 
         return new ApplicationResponse()
@@ -192,9 +183,7 @@ public class ApplicationController extends Controller {
 
         if (session != null && request.contains("page")) {
 
-            UsecasePage usecase = Server.getInstance(UsecasePage.class);
-            usecase.setRefUserId(session.getUserId());
-            usecase.setPage(request.get("page") == null ? null : Integer.parseInt(request.get("page")));
+            UsecasePage usecase = getUsecasePage(session, request.get("page"));
 
             switch(usecase.execute())
             {
@@ -224,4 +213,57 @@ public class ApplicationController extends Controller {
             .setResponseCode(ApplicationResponse.RESPONSE_REDIRECT)
             .setLocation("/");
     }
+
+    /**
+     * Prepare the page usecase, handing it the user profile cached in the
+     * session so that no repository is queried
+     *
+     * @param session
+     * @param page
+     * @return
+     * @throws Exception
+     */
+    private UsecasePage getUsecasePage(Session session, String page) throws Exception {
+
+        UsecasePage usecase = Server.getInstance(UsecasePage.class);
+        usecase.setRefUserId(session.getUserId());
+        usecase.setPage(page == null ? null : Integer.parseInt(page));
+
+        if (loadProfile(session)) {
+            usecase.setProfile(session.getUsername(), session.getRoles());
+        }
+
+        return usecase;
+    }
+
+    /**
+     * Make sure the session holds an up to date profile of its user, the
+     * repositories are only queried at login or after the API modified the user
+     *
+     * @param session
+     * @return false if the user does not exist anymore
+     * @throws Exception
+     */
+    private boolean loadProfile(Session session) throws Exception {
+
+        long version = Server.getUserVersion(session.getUserId());
+
+        if (session.hasProfile(version)) {
+            return true;
+        }
+
+        UsecaseWelcome usecase = Server.getInstance(UsecaseWelcome.class);
+        usecase.setRefUserId(session.getUserId());
+
+        switch(usecase.execute())
+        {
+            case USER_RETRIEVED_SUCCESSFULLY:
+                session.setProfile(version, usecase.getUsername(), usecase.getRoles());
+                return true;
+
+            case USER_NOT_FOUND:
+            default:
+                return false;
+        }
+    }
 }
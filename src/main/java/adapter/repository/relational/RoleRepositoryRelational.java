@@ -1,12 +1,13 @@
 package adapter.repository.relational;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import core.Server;
 import core.database.DatabaseRelational;
+import core.database.Query;
+import core.database.RowMapper;
 
 import domain.entity.Role;
 import domain.contract.repository.IRoleRepository;
@@ -22,10 +23,25 @@ import javax.enterprise.inject.Alternative;
 @Alternative
 public class RoleRepositoryRelational implements IRoleRepository {
 
-    private DatabaseRelational db;
+    private static final Query SELECT_ROLES_BY_USER = Query.of(
+        "SELECT role_id, role_name, role_page FROM roles JOIN user_has_role ON role_id = fk_role_id WHERE fk_user_id = ? ORDER BY role_name ASC"
+    );
+
+    private static final RowMapper<Role> ROLE = row ->
+        new Role(
+            row.getInt("role_id"),
+            row.getString("role_name"),
+            row.getString("role_page")
+        );
+
+    private final DatabaseRelational db;
 
     public RoleRepositoryRelational() {
-        db = Server.getInstance(DatabaseRelational.class);
+        this(Server.getInstance(DatabaseRelational.class));
+    }
+
+    public RoleRepositoryRelational(DatabaseRelational db) {
+        this.db = db;
     }
 
     /**
@@ -33,27 +49,7 @@ public class RoleRepositoryRelational implements IRoleRepository {
      */
     public Role[] getRolesByUser(User user) {
 
-        db.prepare(
-        "SELECT role_id, role_name, role_page FROM roles JOIN user_has_role ON role_id = fk_role_id WHERE fk_user_id = ? ORDER BY role_name ASC"
-        );
-        db.add(user.getId());
-
-        List<Role> roles = new ArrayList<>();
-
-        if (db.select()) {
-
-            while (db.next()) {
-                roles.add(
-                    new Role(
-                        db.getInt("role_id"),
-                        db.getString("role_name"),
-                        db.getString("role_page")
-                    )
-                );
-            }
-        }
-
-        return Arrays.copyOf(roles.toArray(), roles.size(), Role[].class);
+        return toArray(db.select(SELECT_ROLES_BY_USER.bind(user.getId()), ROLE));
     }
 
     /**
@@ -61,39 +57,25 @@ public class RoleRepositoryRelational implements IRoleRepository {
      */
     public Role[] getRolesByUsers(User[] users) {
 
-        Integer[] userIds =
+        Object[] userIds =
             Arrays.stream(users)
                 .map(user -> user.getId())
-                .toArray(Integer[]::new);
+                .toArray();
 
         String template =
             Arrays.stream(userIds)
                 .map(userId -> "?")
                 .collect(Collectors.joining(","));
 
-        db.prepare(
-                "SELECT DISTINCT role_id, role_name, role_page FROM roles JOIN user_has_role ON role_id = fk_role_id WHERE fk_user_id IN (" + template + ") ORDER BY role_name ASC"
+        Query query = Query.of(
+                "SELECT DISTINCT role_id, role_name, role_page FROM roles JOIN user_has_role ON role_id = fk_role_id WHERE fk_user_id IN (" + template + ") ORDER BY role_name ASC",
+                userIds
         );
 
-        for(Integer userId : userIds){
-            db.add(userId);
-        }
-
-        List<Role> roles = new ArrayList<>();
-
-        if (db.select()) {
-
-            while (db.next()) {
-                roles.add(
-                    new Role(
-                        db.getInt("role_id"),
-                        db.getString("role_name"),
-                        db.getString("role_page")
-                    )
-                );
-            }
-        }
+        return toArray(db.select(query, ROLE));
+    }
 
-        return Arrays.copyOf(roles.toArray(), roles.size(), Role[].class);
+    private static Role[] toArray(List<Role> roles) {
+        return roles != null ? roles.toArray(new Role[roles.size()]) : new Role[0];
     }
 }
@@ -1,13 +1,20 @@
 package adapter.repository.relational;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.google.common.base.Strings;
 
 import core.Server;
 import core.database.DatabaseRelational;
+import core.database.Query;
+import core.database.RowHandler;
 
 import domain.entity.User;
 import domain.contract.repository.IUserRepository;
@@ -22,10 +29,92 @@ import javax.enterprise.inject.Alternative;
 @Alternative
 public class UserRepositoryRelational implements IUserRepository {
 
-    private DatabaseRelational db;
+    // Users along with their roles, one row per role, sorted so that the rows
+    // of a user come together and a user without roles still gets a row. Only
+    // sorted by user, so the users are read in primary key order instead of
+    // sorting every row, the few roles of each user are sorted afterwards
+    private static final String SELECT_USERS_WITH_ROLES =
+        "SELECT user_id, user_name, fk_role_id FROM users LEFT JOIN user_has_role ON fk_user_id = user_id ";
+    private static final String ORDER_BY_USER = " ORDER BY user_id ASC";
+
+    private static final Query SELECT_ALL_USERS = Query.of(SELECT_USERS_WITH_ROLES + ORDER_BY_USER);
+    private static final Query SELECT_USER_BY_ID = Query.of(SELECT_USERS_WITH_ROLES + "WHERE user_id = ?" + ORDER_BY_USER);
+    private static final Query SELECT_USER_BY_NAME = Query.of(SELECT_USERS_WITH_ROLES + "WHERE user_name = ?" + ORDER_BY_USER);
+    private static final Query SELECT_USER_BY_NAME_PASS = Query.of(SELECT_USERS_WITH_ROLES + "WHERE user_name = ? AND user_password = ?" + ORDER_BY_USER);
+    private static final Query INSERT_USER = Query.of("INSERT INTO users(user_name, user_password) VALUES(?, ?)");
+    private static final Query UPDATE_USER = Query.of("UPDATE users SET user_name = ?, user_password = ? WHERE user_id = ?");
+    private static final Query DELETE_USER = Query.of("DELETE FROM users WHERE user_id = ?");
+    private static final Query SELECT_USER_ROLE_IDS = Query.of("SELECT fk_role_id FROM user_has_role WHERE fk_user_id = ?");
+    private static final Query INSERT_USER_ROLE = Query.of("INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(?, ?)");
+    private static final Query DELETE_USER_ROLE = Query.of("DELETE FROM user_has_role WHERE fk_user_id = ? AND fk_role_id = ?");
+    private static final Query DELETE_USER_ROLES = Query.of("DELETE FROM user_has_role WHERE fk_user_id = ?");
+
+    /**
+     * Folds the rows of the users joined with their roles into users, in a
+     * single pass as the rows are read. The roles of the user being read are
+     * gathered in a reusable buffer and copied once the user is complete
+     */
+    private static final class UserCollector implements RowHandler {
+
+        // Positions in the select list, looking columns up by label costs more
+        // than reading them on drivers like sqlite-jdbc
+        private static final int USER_ID = 1;
+        private static final int USER_NAME = 2;
+        private static final int ROLE_ID = 3;
+
+        private final List<User> users = new ArrayList<>();
+        private User current = null;
+        private int currentId = 0;
+        private int[] roles = new int[8];
+        private int count = 0;
+
+        public void handle(ResultSet row) throws SQLException {
+
+            int uid = row.getInt(USER_ID);
+            if (current == null || uid != currentId) {
+                complete();
+                current = new User().setId(uid).setUsername(row.getString(USER_NAME));
+                currentId = uid;
+                users.add(current);
+            }
+
+            // No role at all leaves a single row with a null role
+            int roleId = row.getInt(ROLE_ID);
+            if (!row.wasNull()) {
+                if (count == roles.length) {
+                    roles = Arrays.copyOf(roles, count * 2);
+                }
+                roles[count++] = roleId;
+            }
+        }
+
+        private List<User> getUsers() {
+            complete();
+            return users;
+        }
+
+        private void complete() {
+            if (current != null) {
+                Arrays.sort(roles, 0, count);
+                Integer[] userRoles = new Integer[count];
+                for (int i = 0; i < count; i++) {
+                    userRoles[i] = roles[i];
+                }
+                current.setRoles(userRoles);
+                current = null;
+                count = 0;
+            }
+        }
+    }
+
+    private final DatabaseRelational db;
 
     public UserRepositoryRelational() {
-        db = Server.getInstance(DatabaseRelational.class);
+        this(Server.getInstance(DatabaseRelational.class));
+    }
+
+    public UserRepositoryRelational(DatabaseRelational db) {
+        this.db = db;
     }
 
     /**
@@ -33,21 +122,11 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     public User[] getAllUsers() {
 
-        db.prepare("SELECT user_id, user_name FROM users");
+        UserCollector collector = new UserCollector();
 
-        if (db.select()) {
-            List<User> users = new ArrayList<>();
-            while (db.next()) {
-                users.add(
-                    new User()
-                        .setId(db.getInt("user_id"))
-                        .setUsername(db.getString("user_name"))
-                );
-            }
-            for(User user : users){
-                user.setRoles(selectUserRoles(user.getId()));
-            }
-            return Arrays.copyOf(users.toArray(), users.size(), User[].class);
+        if (db.selectEach(SELECT_ALL_USERS, collector)) {
+            List<User> users = collector.getUsers();
+            return users.toArray(new User[users.size()]);
         } else {
             return null;
         }
@@ -83,12 +162,11 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     private boolean findUserById(User user) {
 
-        db.prepare("SELECT user_name FROM users WHERE user_id = ?");
-        db.add(user.getId());
+        User found = selectUser(SELECT_USER_BY_ID.bind(user.getId()));
 
-        if (db.selectOne()) {
-            user.setUsername(db.getString("user_name"))
-                .setRoles(selectUserRoles(user.getId()));
+        if (found != null) {
+            user.setUsername(found.getUsername())
+                .setRoles(found.getRoleIds());
             return true;
         } else {
             return false;
@@ -100,13 +178,11 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     private boolean findUserByName(User user) {
 
-        db.prepare("SELECT user_id FROM users WHERE user_name = ?");
-        db.add(user.getUsername());
+        User found = selectUser(SELECT_USER_BY_NAME.bind(user.getUsername()));
 
-        if (db.selectOne()) {
-            Integer uid = db.getInt("user_id");
-            user.setId(uid)
-                .setRoles(selectUserRoles(uid));
+        if (found != null) {
+            user.setId(found.getId())
+                .setRoles(found.getRoleIds());
             return true;
         } else {
             return false;
@@ -118,14 +194,11 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     private boolean findUserByNamePass(User user) {
 
-        db.prepare("SELECT user_id FROM users WHERE user_name = ? AND user_password = ?");
-        db.add(user.getUsername());
-        db.add(user.getPassword());
+        User found = selectUser(SELECT_USER_BY_NAME_PASS.bind(user.getUsername(), user.getPassword()));
 
-        if (db.selectOne()) {
-            Integer uid = db.getInt("user_id");
-            user.setId(uid)
-                .setRoles(selectUserRoles(uid));
+        if (found != null) {
+            user.setId(found.getId())
+                .setRoles(found.getRoleIds());
             return true;
         } else {
             return false;
@@ -137,14 +210,11 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     public Integer insertUser(User user) {
 
-        db.prepare("INSERT INTO users(user_name, user_password) VALUES(?, ?)");
-        db.add(user.getUsername());
-        db.add(user.getPassword());
-
-        Integer uid = db.insert();
+        Integer uid = db.insert(INSERT_USER.bind(user.getUsername(), user.getPassword()));
 
         if(uid != null) {
-            setRolesToUser(uid, user.getRoleIds());
+            // A new user has no roles yet
+            setRolesToUser(uid, new ArrayList<>(), user.getRoleIds());
             return uid;
         }
 
@@ -156,13 +226,9 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     public boolean updateUser(User user) {
 
-        db.prepare("UPDATE users SET user_name = ?, user_password = ? WHERE user_id = ?");
-        db.add(user.getUsername());
-        db.add(user.getPassword());
-        db.add(user.getId());
-
-        if(db.update()){
-            return setRolesToUser(user.getId(), user.getRoleIds());
+        if(db.execute(UPDATE_USER.bind(user.getUsername(), user.getPassword(), user.getId()))){
+            List<Integer> current = db.select(SELECT_USER_ROLE_IDS.bind(user.getId()), row -> row.getInt(1));
+            return current != null && setRolesToUser(user.getId(), current, user.getRoleIds());
         }
 
         return false;
@@ -173,48 +239,67 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     public boolean deleteUser(User user) {
 
-        db.prepare("DELETE FROM users WHERE user_id = ?");
-        db.add(user.getId());
-
-        if(db.delete()){
-            return removeAllRolesFromUser(user.getId());
+        // Roles go first, SQLite reuses the id of the last user as soon as it
+        // is deleted and a new user must not find roles left behind
+        if(removeAllRolesFromUser(user.getId())){
+            return db.execute(DELETE_USER.bind(user.getId()));
         }
 
         return false;
     }
 
-    private Integer[] selectUserRoles(Integer uid) {
-
-        db.prepare("SELECT fk_role_id FROM user_has_role WHERE fk_user_id = ? ORDER BY fk_role_id ASC");
-        db.add(uid);
+    /**
+     * First user matching the query along with its roles, null if none
+     */
+    private User selectUser(Query query) {
 
-        List<Integer> roles = new ArrayList<>();
+        UserCollector collector = new UserCollector();
 
-        if (db.select()) {
-            while (db.next()) {
-                roles.add(db.getInt("fk_role_id"));
-            }
+        if (db.selectEach(query, collector)) {
+            List<User> users = collector.getUsers();
+            return users.isEmpty() ? null : users.get(0);
         }
 
-        return Arrays.copyOf(roles.toArray(), roles.size(), Integer[].class);
+        return null;
     }
 
     /**
-     * Insert row in the table user_has_role
+     * Bring the rows of the user in the table user_has_role from the current
+     * roles to the given ones, only the roles which differ are written and
+     * in a single batch, so leaving the roles as they are writes nothing
      */
-    private boolean setRolesToUser(Integer uid, Integer[] rids) {
+    private boolean setRolesToUser(Integer uid, List<Integer> current, Integer[] rids) {
 
-        if(removeAllRolesFromUser(uid)){
+        Set<Integer> wanted = new LinkedHashSet<>();
+        if (rids != null) {
             for (Integer roleId : rids) {
-                db.prepare("INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(?, ?)");
-                db.add(uid);
-                db.add(roleId);
-                db.insert();
+                if (roleId != null) {
+                    wanted.add(roleId);
+                }
             }
-            return true;
         }
 
-        return false;
+        // A role found twice is removed altogether and written again once
+        Set<Integer> kept = new HashSet<>();
+        Set<Integer> removed = new LinkedHashSet<>();
+        for (Integer roleId : current) {
+            if (!wanted.contains(roleId) || !kept.add(roleId)) {
+                removed.add(roleId);
+            }
+        }
+        kept.removeAll(removed);
+
+        List<Query> writes = new ArrayList<>();
+        for (Integer roleId : removed) {
+            writes.add(DELETE_USER_ROLE.bind(uid, roleId));
+        }
+        for (Integer roleId : wanted) {
+            if (!kept.contains(roleId)) {
+                writes.add(INSERT_USER_ROLE.bind(uid, roleId));
+            }
+        }
+
+        return writes.isEmpty() || db.executeBatch(writes);
     }
 
     /**
@@ -222,9 +307,6 @@ public class UserRepositoryRelational implements IUserRepository {
      */
     private boolean removeAllRolesFromUser(Integer uid) {
 
-        db.prepare("DELETE FROM user_has_role WHERE fk_user_id = ?");
-        db.add(uid);
-
-        return db.delete();
+        return db.execute(DELETE_USER_ROLES.bind(uid));
     }
 }
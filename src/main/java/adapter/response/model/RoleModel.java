@@ -2,9 +2,17 @@ package adapter.response.model;
 
 import domain.contract.entity.RoleObject;
 
+import java.io.IOException;
+
 import javax.xml.bind.annotation.XmlAttribute;
 
-public class RoleModel {
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+public class RoleModel implements RoleObject {
 
     @XmlAttribute(name = "id")
     protected int id;
@@ -20,4 +28,94 @@ public class RoleModel {
         name = role.getName();
         page = role.getPage();
     }
+
+    public RoleModel(int id, String name, String page){
+        this.id = id;
+        this.name = name;
+        this.page = page;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPage() {
+        return page;
+    }
+
+    /**
+     * Json mapping without reflection, fields are written in declaration
+     * order and null ones are left out
+     */
+    public static class Adapter extends TypeAdapter<RoleModel> {
+
+        @Override
+        public void write(JsonWriter out, RoleModel role) throws IOException {
+            writeRole(out, role);
+        }
+
+        public static void writeRole(JsonWriter out, RoleObject role) throws IOException {
+
+            if (role == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("id").value(role.getId());
+            if (role.getName() != null) {
+                out.name("name").value(role.getName());
+            }
+            if (role.getPage() != null) {
+                out.name("page").value(role.getPage());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public RoleModel read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int id = 0;
+            String name = null;
+            String page = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "id":
+                        try {
+                            id = in.nextInt();
+                        } catch (NumberFormatException e) {
+                            throw new JsonSyntaxException(e);
+                        }
+                        break;
+                    case "name":
+                        name = in.nextString();
+                        break;
+                    case "page":
+                        page = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new RoleModel(id, name, page);
+        }
+    }
 }
@@ -2,9 +2,19 @@ package adapter.response.model;
 
 import domain.contract.entity.UserObject;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
 public class UserModel implements UserObject {
 
     @XmlAttribute(name="id")
@@ -13,7 +23,7 @@ public class UserModel implements UserObject {
     @XmlAttribute(name="name")
     private String username;
 
-    // The transient thing is for gson to ignore
+    // Never written out, only read from requests
     private transient String password;
 
     @XmlElement(name="role_id")
@@ -26,6 +36,13 @@ public class UserModel implements UserObject {
         roles = user.getRoleIds();
     }
 
+    public UserModel(int id, String username, String password, Integer[] roles){
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.roles = roles;
+    }
+
     public Integer getId() {
         return id;
     }
@@ -41,4 +58,99 @@ public class UserModel implements UserObject {
     public String getPassword() {
         return password;
     }
+
+    /**
+     * Json mapping without reflection, fields are written in declaration
+     * order and null ones are left out, the password is only read
+     */
+    public static class Adapter extends TypeAdapter<UserModel> {
+
+        @Override
+        public void write(JsonWriter out, UserModel user) throws IOException {
+            writeUser(out, user);
+        }
+
+        public static void writeUser(JsonWriter out, UserObject user) throws IOException {
+
+            if (user == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("id").value(user.getId());
+            if (user.getUsername() != null) {
+                out.name("username").value(user.getUsername());
+            }
+            if (user.getRoleIds() != null) {
+                out.name("roles").beginArray();
+                for (Integer role : user.getRoleIds()) {
+                    out.value(role);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public UserModel read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int id = 0;
+            String username = null;
+            String password = null;
+            Integer[] roles = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "id":
+                        id = readInteger(in);
+                        break;
+                    case "username":
+                        username = in.nextString();
+                        break;
+                    case "password":
+                        password = in.nextString();
+                        break;
+                    case "roles":
+                        List<Integer> values = new ArrayList<>();
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            if (in.peek() == JsonToken.NULL) {
+                                in.nextNull();
+                                values.add(null);
+                            } else {
+                                values.add(readInteger(in));
+                            }
+                        }
+                        in.endArray();
+                        roles = values.toArray(new Integer[values.size()]);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new UserModel(id, username, password, roles);
+        }
+
+        private static int readInteger(JsonReader in) throws IOException {
+            try {
+                return in.nextInt();
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+    }
 }
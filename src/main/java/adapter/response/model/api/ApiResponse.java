@@ -1,21 +1,157 @@
 package adapter.response.model.api;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import adapter.response.model.RoleModel;
+import adapter.response.model.UserModel;
+import adapter.response.serializer.BinaryFormat;
+import adapter.response.serializer.BinaryOutput;
+import domain.contract.entity.RoleObject;
+import core.Server;
 
 public class ApiResponse {
 
+    static final UserModel.Adapter USER_ADAPTER = new UserModel.Adapter();
+    static final RoleModel.Adapter ROLE_ADAPTER = new RoleModel.Adapter();
+
+    // Gson is thread safe, one instance with hand written adapters serves every request
+    private static final Gson gson = new GsonBuilder()
+        .registerTypeAdapter(UserModel.class, USER_ADAPTER)
+        .registerTypeAdapter(RoleModel.class, ROLE_ADAPTER)
+        .registerTypeAdapter(ApiResponseUserCollection.class, new ApiResponseUserCollection.Adapter())
+        .registerTypeAdapter(ApiResponseUserResource.class, new ApiResponseUserResource.Adapter())
+        .registerTypeAdapter(ApiResponseError.class, new ApiResponseError.Adapter())
+        .create();
+
+    private static final List<Class<? extends ApiResponse>> RESPONSES = Arrays.asList(
+        ApiResponseUserCollection.class,
+        ApiResponseUserResource.class,
+        ApiResponseError.class
+    );
+
+    // Creating a JAXB context is expensive, it is done once per response class and shared
+    private static final ConcurrentHashMap<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<>();
+
+    // Marshallers are not thread safe, every thread keeps its own
+    private static final ThreadLocal<Map<Class<?>, Marshaller>> marshallers = ThreadLocal.withInitial(HashMap::new);
+
+    public static Gson getGson() {
+        return gson;
+    }
+
     /**
      * Convert this class or a derived one to Json
      * 
      * @return
      */
     public String getJson() {
-        return new Gson().toJson(this);
+        return gson.toJson(this);
+    }
+
+    /**
+     * Write this class or a derived one as Json into the stream
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public void writeJson(OutputStream stream) throws IOException {
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        gson.toJson(this, writer);
+        writer.flush();
+    }
+
+    public void writeCbor(OutputStream stream) throws IOException {
+        writeBinary(BinaryFormat.CBOR, stream);
+    }
+
+    public void writeMsgPack(OutputStream stream) throws IOException {
+        writeBinary(BinaryFormat.MSGPACK, stream);
+    }
+
+    /**
+     * Write this class or a derived one in a binary encoding, with the same
+     * structure as its Json
+     *
+     * @param format
+     * @param stream
+     * @throws IOException
+     */
+    protected void writeBinary(BinaryFormat format, OutputStream stream) throws IOException {
+        BinaryOutput out = format.createOutput(stream);
+        writeElement(out, gson.toJsonTree(this));
+        out.flush();
+    }
+
+    private static void writeElement(BinaryOutput out, JsonElement element) throws IOException {
+
+        if (element.isJsonObject()) {
+            out.startMap(element.getAsJsonObject().size());
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                out.value(entry.getKey());
+                writeElement(out, entry.getValue());
+            }
+        } else if (element.isJsonArray()) {
+            out.startArray(element.getAsJsonArray().size());
+            for (JsonElement item : element.getAsJsonArray()) {
+                writeElement(out, item);
+            }
+        } else if (element.isJsonNull()) {
+            out.nullValue();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.value(primitive.getAsBoolean());
+            } else if (primitive.isString()) {
+                out.value(primitive.getAsString());
+            } else {
+                double number = primitive.getAsDouble();
+                if (number == Math.rint(number) && Math.abs(number) < 0x1p53) {
+                    out.value(primitive.getAsLong());
+                } else {
+                    out.value(number);
+                }
+            }
+        }
+    }
+
+    static void writeRoles(JsonWriter out, RoleObject[] roles) throws IOException {
+        out.name("roles").beginArray();
+        for (RoleObject role : roles) {
+            RoleModel.Adapter.writeRole(out, role);
+        }
+        out.endArray();
+    }
+
+    static RoleObject[] readRoles(JsonReader in) throws IOException {
+        List<RoleObject> roles = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            roles.add(ROLE_ADAPTER.read(in));
+        }
+        in.endArray();
+        return roles.toArray(new RoleObject[roles.size()]);
     }
 
     /**
@@ -26,13 +162,72 @@ public class ApiResponse {
      */
     public String getXml() throws Exception {
 
-        JAXBContext context = JAXBContext.newInstance(this.getClass());
-        Marshaller m = context.createMarshaller();
-
-        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-
         StringWriter sw = new StringWriter();
-        m.marshal(this, sw);
+        getMarshaller(this.getClass()).marshal(this, sw);
         return sw.toString();
     }
+
+    /**
+     * Write this class or a derived one as XML into the stream
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public void writeXml(OutputStream stream) throws IOException {
+        try {
+            getMarshaller(this.getClass()).marshal(this, stream);
+        } catch (JAXBException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Whether XML responses are indented, on unless XML_FORMATTED_OUTPUT is false
+     *
+     * @return
+     */
+    static boolean isXmlFormatted() {
+        String formatted = Server.getConfig(Server.Config.XML_FORMATTED_OUTPUT);
+        return formatted == null || Boolean.parseBoolean(formatted);
+    }
+
+    /**
+     * Create the JAXB contexts of every response ahead of the first request
+     *
+     * @throws JAXBException
+     */
+    public static void preloadXml() throws JAXBException {
+        for (Class<? extends ApiResponse> type : RESPONSES) {
+            getContext(type);
+        }
+    }
+
+    private static JAXBContext getContext(Class<?> type) throws JAXBException {
+
+        JAXBContext context = contexts.get(type);
+
+        if (context == null) {
+            context = JAXBContext.newInstance(type);
+            JAXBContext previous = contexts.putIfAbsent(type, context);
+            if (previous != null) {
+                context = previous;
+            }
+        }
+
+        return context;
+    }
+
+    private static Marshaller getMarshaller(Class<?> type) throws JAXBException {
+
+        Map<Class<?>, Marshaller> pool = marshallers.get();
+        Marshaller marshaller = pool.get(type);
+
+        if (marshaller == null) {
+            marshaller = getContext(type).createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, isXmlFormatted());
+            pool.put(type, marshaller);
+        }
+
+        return marshaller;
+    }
 }
@@ -1,12 +1,25 @@
 package adapter.response.model.api;
 
+import java.io.IOException;
+
+import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
 @XmlRootElement(name = "ApiResponse")
 public class ApiResponseError extends ApiResponse {
 
+    @XmlElement(name = "error")
     private String error;
 
+    public ApiResponseError() {
+
+    }
+
     public ApiResponseError(String error) {
         this.setError(error);
     }
@@ -14,4 +27,45 @@ public class ApiResponseError extends ApiResponse {
     public void setError(String error) {
         this.error = error;
     }
+
+    public static class Adapter extends TypeAdapter<ApiResponseError> {
+
+        @Override
+        public void write(JsonWriter out, ApiResponseError response) throws IOException {
+
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (response.error != null) {
+                out.name("error").value(response.error);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ApiResponseError read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            ApiResponseError response = new ApiResponseError();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("error") && in.peek() != JsonToken.NULL) {
+                    response.error = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return response;
+        }
+    }
 }
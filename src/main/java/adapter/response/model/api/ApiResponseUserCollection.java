@@ -1,41 +1,173 @@
 package adapter.response.model.api;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import adapter.response.model.RoleModel;
 import adapter.response.model.UserModel;
+import adapter.response.serializer.BinaryInput;
+import adapter.response.serializer.BinaryFormat;
+import adapter.response.serializer.DecodingException;
+import adapter.response.serializer.UserApiBinarySerializer;
+import adapter.response.serializer.UserApiJsonSerializer;
+import adapter.response.serializer.UserApiXmlSerializer;
 import domain.contract.entity.RoleObject;
 import domain.contract.entity.UserObject;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import core.Server;
 
 @XmlRootElement(name = "ApiResponse")
 public class ApiResponseUserCollection extends ApiResponse {
 
+    // The serializers write straight from these
+    private UserObject[] userObjects;
+    private RoleObject[] roleObjects;
+
+    // Only built when JAXB marshals the response
     @XmlElementWrapper(name = "users")
     @XmlElement(name = "user")
-    private List<UserModel> users = new ArrayList<>();
+    private List<UserModel> users = null;
 
     @XmlElementWrapper(name = "roles")
     @XmlElement(name = "role")
-    private List<RoleModel> roles = new ArrayList<>();
+    private List<RoleModel> roles = null;
 
     public ApiResponseUserCollection(){
-
+        this(null, null);
     }
 
     public ApiResponseUserCollection(UserObject[] users, RoleObject[] roles) {
+        this.userObjects = users != null ? users : new UserObject[0];
+        this.roleObjects = roles != null ? roles : new RoleObject[0];
+    }
+
+    @Override
+    public void writeJson(OutputStream stream) throws IOException {
+        UserApiJsonSerializer.writeCollection(userObjects, roleObjects, stream, Server.getUserFragmentCache());
+    }
+
+    @Override
+    public void writeXml(OutputStream stream) throws IOException {
+        UserApiXmlSerializer.writeCollection(userObjects, roleObjects, stream, isXmlFormatted(), Server.getUserFragmentCache());
+    }
 
-        if (users != null && users.length > 0) {
-            Arrays.stream(users).forEach((user) -> this.users.add(new UserModel(user)));
+    @Override
+    protected void writeBinary(BinaryFormat format, OutputStream stream) throws IOException {
+        UserApiBinarySerializer.writeCollection(userObjects, roleObjects, format, stream);
+    }
+
+    /**
+     * Read a collection written by writeCbor or writeMsgPack
+     *
+     * @param in
+     * @return
+     * @throws DecodingException
+     */
+    public static ApiResponseUserCollection readBinary(BinaryInput in) throws DecodingException {
+
+        UserObject[] users = null;
+        RoleObject[] roles = null;
+
+        int size = in.readMapHeader();
+        for (int i = 0; in.hasNext(size, i); i++) {
+            String field = in.readString();
+            if (field == null) {
+                in.skipValue();
+                continue;
+            }
+            if (in.readNull()) {
+                continue;
+            }
+            switch (field) {
+                case "users":
+                    users = UserApiBinarySerializer.readUsers(in);
+                    break;
+                case "roles":
+                    roles = UserApiBinarySerializer.readRoles(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        return new ApiResponseUserCollection(users, roles);
+    }
+
+    // JAXB callback
+    private void beforeMarshal(Marshaller marshaller) {
+        users = Arrays.stream(userObjects).map(UserModel::new).collect(Collectors.toList());
+        roles = Arrays.stream(roleObjects).map(RoleModel::new).collect(Collectors.toList());
+    }
+
+    public static class Adapter extends TypeAdapter<ApiResponseUserCollection> {
+
+        @Override
+        public void write(JsonWriter out, ApiResponseUserCollection response) throws IOException {
+
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("users").beginArray();
+            for (UserObject user : response.userObjects) {
+                UserModel.Adapter.writeUser(out, user);
+            }
+            out.endArray();
+            writeRoles(out, response.roleObjects);
+            out.endObject();
         }
 
-        if (roles != null && roles.length > 0 ) {
-            Arrays.stream(roles).forEach((role) -> this.roles.add(new RoleModel(role)));
+        @Override
+        public ApiResponseUserCollection read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            List<UserObject> users = new ArrayList<>();
+            RoleObject[] roles = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "users":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            users.add(USER_ADAPTER.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    case "roles":
+                        roles = readRoles(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiResponseUserCollection(users.toArray(new UserObject[users.size()]), roles);
         }
     }
 }
@@ -1,40 +1,126 @@
 package adapter.response.model.api;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import adapter.response.model.RoleModel;
 import adapter.response.model.UserModel;
+import adapter.response.serializer.BinaryFormat;
+import adapter.response.serializer.UserApiBinarySerializer;
+import adapter.response.serializer.UserApiJsonSerializer;
+import adapter.response.serializer.UserApiXmlSerializer;
 import domain.contract.entity.RoleObject;
 import domain.contract.entity.UserObject;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 @XmlRootElement(name = "ApiResponse")
 public class ApiResponseUserResource extends ApiResponse {
 
+    // The serializers write straight from these
+    private UserObject userObject;
+    private RoleObject[] roleObjects;
+
+    // Only built when JAXB marshals the response
     @XmlElement(name = "user")
     private UserModel user = null;
 
     @XmlElementWrapper(name = "roles")
     @XmlElement(name = "role")
-    private List<RoleModel> roles = new ArrayList<>();
+    private List<RoleModel> roles = null;
 
     public ApiResponseUserResource(){
-
+        this(null, null);
     }
 
     public ApiResponseUserResource(UserObject user, RoleObject[] roles) {
+        this.userObject = user;
+        this.roleObjects = roles != null ? roles : new RoleObject[0];
+    }
 
-        if (user != null) {
-            this.user = new UserModel(user);
+    @Override
+    public void writeJson(OutputStream stream) throws IOException {
+        UserApiJsonSerializer.writeResource(userObject, roleObjects, stream);
+    }
+
+    @Override
+    public void writeXml(OutputStream stream) throws IOException {
+        UserApiXmlSerializer.writeResource(userObject, roleObjects, stream, isXmlFormatted());
+    }
+
+    @Override
+    protected void writeBinary(BinaryFormat format, OutputStream stream) throws IOException {
+        UserApiBinarySerializer.writeResource(userObject, roleObjects, format, stream);
+    }
+
+    // JAXB callback
+    private void beforeMarshal(Marshaller marshaller) {
+        user = userObject != null ? new UserModel(userObject) : null;
+        roles = Arrays.stream(roleObjects).map(RoleModel::new).collect(Collectors.toList());
+    }
+
+    public static class Adapter extends TypeAdapter<ApiResponseUserResource> {
+
+        @Override
+        public void write(JsonWriter out, ApiResponseUserResource response) throws IOException {
+
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (response.userObject != null) {
+                out.name("user");
+                UserModel.Adapter.writeUser(out, response.userObject);
+            }
+            writeRoles(out, response.roleObjects);
+            out.endObject();
         }
 
-        if (roles != null && roles.length > 0 ) {
-            Arrays.stream(roles).forEach((role) -> this.roles.add(new RoleModel(role)));
+        @Override
+        public ApiResponseUserResource read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            UserObject user = null;
+            RoleObject[] roles = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "user":
+                        user = USER_ADAPTER.read(in);
+                        break;
+                    case "roles":
+                        roles = readRoles(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiResponseUserResource(user, roles);
         }
     }
 }
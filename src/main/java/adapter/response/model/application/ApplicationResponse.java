@@ -21,6 +21,7 @@ public class ApplicationResponse {
     public static final String TEMPLATE_LOGIN = "templates/login.html";
     public static final String TEMPLATE_WELCOME = "templates/welcome.html";
     public static final String TEMPLATE_PAGE = "templates/page.html";
+    public static final String[] TEMPLATES = { TEMPLATE_LOGIN, TEMPLATE_WELCOME, TEMPLATE_PAGE };
 
     private int response; // Application response code
     private Session session = null; // New session created by the Application
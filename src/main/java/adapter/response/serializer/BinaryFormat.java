@@ -0,0 +1,33 @@
+package adapter.response.serializer;
+
+import java.io.OutputStream;
+
+/**
+ * Binary encodings supported by the API besides Json and XML
+ *
+ * @author Peibol
+ */
+public enum BinaryFormat {
+    CBOR,
+    MSGPACK;
+
+    public BinaryOutput createOutput(OutputStream stream) {
+        switch (this) {
+            case CBOR:
+                return new CborOutput(stream);
+            case MSGPACK:
+            default:
+                return new MsgPackOutput(stream);
+        }
+    }
+
+    public BinaryInput createInput(byte[] data) {
+        switch (this) {
+            case CBOR:
+                return new CborInput(data);
+            case MSGPACK:
+            default:
+                return new MsgPackInput(data);
+        }
+    }
+}
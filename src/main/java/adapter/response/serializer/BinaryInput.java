@@ -0,0 +1,181 @@
+package adapter.response.serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of a compact binary encoding with the Json data model, decoding a
+ * whole message held in memory. Maps and arrays are read by taking their
+ * header and then asking hasNext for every entry
+ *
+ * @author Peibol
+ */
+public abstract class BinaryInput {
+
+    // Values skipped nest no deeper than this, deeper input is rejected
+    // before the recursion can exhaust the stack
+    protected static final int MAX_DEPTH = 64;
+
+    protected final byte[] data;
+    protected int position = 0;
+    private int depth = 0;
+
+    protected BinaryInput(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * @return Number of entries, -1 when the end of the map is marked instead
+     * @throws DecodingException
+     */
+    public abstract int readMapHeader() throws DecodingException;
+
+    /**
+     * @return Number of items, -1 when the end of the array is marked instead
+     * @throws DecodingException
+     */
+    public abstract int readArrayHeader() throws DecodingException;
+
+    /**
+     * Consume a null if it comes next
+     *
+     * @return Whether it did
+     * @throws DecodingException
+     */
+    public abstract boolean readNull() throws DecodingException;
+
+    /**
+     * @return The string, null when a null was read
+     * @throws DecodingException
+     */
+    public abstract String readString() throws DecodingException;
+
+    /**
+     * Read an integer, floating point numbers are accepted when they have no
+     * fractional part
+     *
+     * @return
+     * @throws DecodingException
+     */
+    public abstract long readLong() throws DecodingException;
+
+    /**
+     * Skip the next value, maps and arrays along with everything in them
+     *
+     * @throws DecodingException also when they nest deeper than MAX_DEPTH
+     */
+    public abstract void skipValue() throws DecodingException;
+
+    /**
+     * Consume the end mark of a map or array of unknown size if it comes next
+     *
+     * @return Whether it did
+     * @throws DecodingException
+     */
+    protected abstract boolean readEnd() throws DecodingException;
+
+    /**
+     * Whether the map or array has more entries
+     *
+     * @param size As returned by the header
+     * @param read Entries already read
+     * @return
+     * @throws DecodingException
+     */
+    public boolean hasNext(int size, int read) throws DecodingException {
+        return size >= 0 ? read < size : !readEnd();
+    }
+
+    /**
+     * @return The integer, null when a null was read
+     * @throws DecodingException
+     */
+    public Integer readInteger() throws DecodingException {
+        if (readNull()) {
+            return null;
+        }
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new DecodingException("Integer out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Whether the whole input was read
+     *
+     * @return
+     */
+    public boolean isFinished() {
+        return position == data.length;
+    }
+
+    /**
+     * Step into a map or array being skipped
+     *
+     * @throws DecodingException if it nests too deep
+     */
+    protected void enter() throws DecodingException {
+        if (++depth > MAX_DEPTH) {
+            throw new DecodingException("Values nested deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+
+    protected void leave() {
+        depth--;
+    }
+
+    protected int next() throws DecodingException {
+        if (position >= data.length) {
+            throw new DecodingException("Unexpected end of input");
+        }
+        return data[position++] & 0xff;
+    }
+
+    protected int peek() throws DecodingException {
+        if (position >= data.length) {
+            throw new DecodingException("Unexpected end of input");
+        }
+        return data[position] & 0xff;
+    }
+
+    protected long readBigEndian(int length) throws DecodingException {
+        require(length);
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value << 8 | data[position++] & 0xff;
+        }
+        return value;
+    }
+
+    protected String readUtf8(long length) throws DecodingException {
+        require(length);
+        String value = new String(data, position, (int) length, StandardCharsets.UTF_8);
+        position += (int) length;
+        return value;
+    }
+
+    protected void skip(long length) throws DecodingException {
+        require(length);
+        position += (int) length;
+    }
+
+    protected static long toLong(double value) throws DecodingException {
+        if (value != Math.rint(value) || value < Long.MIN_VALUE || value > Long.MAX_VALUE) {
+            throw new DecodingException("Expected an integer but was " + value);
+        }
+        return (long) value;
+    }
+
+    protected static int toSize(long size) throws DecodingException {
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new DecodingException("Size out of range: " + size);
+        }
+        return (int) size;
+    }
+
+    private void require(long length) throws DecodingException {
+        if (length < 0 || length > data.length - position) {
+            throw new DecodingException("Unexpected end of input");
+        }
+    }
+}
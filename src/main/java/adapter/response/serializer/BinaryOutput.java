@@ -0,0 +1,55 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writer of a compact binary encoding with the Json data model, maps and
+ * arrays are written with their size up front
+ *
+ * @author Peibol
+ */
+public abstract class BinaryOutput extends Utf8Output {
+
+    protected BinaryOutput(OutputStream stream) {
+        super(stream);
+    }
+
+    /**
+     * Bytes already encoded, such as a value written beforehand with
+     * another output of the same class
+     *
+     * @param bytes
+     * @return
+     * @throws IOException
+     */
+    public BinaryOutput raw(byte[] bytes) throws IOException {
+        writeBytes(bytes);
+        return this;
+    }
+
+    public abstract BinaryOutput startMap(int size) throws IOException;
+
+    public abstract BinaryOutput startArray(int size) throws IOException;
+
+    public abstract BinaryOutput value(String value) throws IOException;
+
+    public abstract BinaryOutput value(long value) throws IOException;
+
+    public abstract BinaryOutput value(double value) throws IOException;
+
+    public abstract BinaryOutput value(boolean value) throws IOException;
+
+    public abstract BinaryOutput nullValue() throws IOException;
+
+    public BinaryOutput value(Integer value) throws IOException {
+        return value == null ? nullValue() : value(value.longValue());
+    }
+
+    /**
+     * Strings are written as plain UTF-8 after their length, see writeUtf8
+     */
+    protected byte[] escape(char c) {
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+package adapter.response.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CBOR reader (RFC 7049), definite and indefinite length items are accepted
+ * and tags are ignored
+ *
+ * @author Peibol
+ */
+public class CborInput extends BinaryInput {
+
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1;
+    private static final int BYTES = 2;
+    private static final int TEXT = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+    private static final int TAG = 6;
+    private static final int SIMPLE = 7;
+
+    private static final int INDEFINITE = 31;
+    private static final int BREAK = 0xff;
+
+    // Of the last header read
+    private int info;
+    private long argument;
+
+    public CborInput(byte[] data) {
+        super(data);
+    }
+
+    public int readMapHeader() throws DecodingException {
+        expect(MAP, "map");
+        return info == INDEFINITE ? -1 : toSize(argument);
+    }
+
+    public int readArrayHeader() throws DecodingException {
+        expect(ARRAY, "array");
+        return info == INDEFINITE ? -1 : toSize(argument);
+    }
+
+    public boolean readNull() throws DecodingException {
+        // Undefined is taken as null
+        int initial = peek();
+        if (initial == 0xf6 || initial == 0xf7) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    public String readString() throws DecodingException {
+
+        if (readNull()) {
+            return null;
+        }
+
+        expect(TEXT, "string");
+        if (info != INDEFINITE) {
+            return readUtf8(argument);
+        }
+
+        // Chunks are whole UTF-8 sequences but are joined before decoding anyway
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        while (!readEnd()) {
+            expect(TEXT, "string chunk");
+            int start = position;
+            skip(argument);
+            chunks.write(data, start, position - start);
+        }
+        return new String(chunks.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public long readLong() throws DecodingException {
+
+        switch (header()) {
+            case UNSIGNED:
+                if (argument < 0) {
+                    throw new DecodingException("Integer out of range");
+                }
+                return argument;
+            case NEGATIVE:
+                if (argument < 0) {
+                    throw new DecodingException("Integer out of range");
+                }
+                return -1 - argument;
+            case SIMPLE:
+                switch (info) {
+                    case 25:
+                        return toLong(halfToDouble((int) argument));
+                    case 26:
+                        return toLong(Float.intBitsToFloat((int) argument));
+                    case 27:
+                        return toLong(Double.longBitsToDouble(argument));
+                }
+        }
+        throw new DecodingException("Expected an integer");
+    }
+
+    public void skipValue() throws DecodingException {
+
+        int major = header();
+
+        if (major < BYTES || major > MAP) {
+            return;
+        }
+
+        if (major <= TEXT && info != INDEFINITE) {
+            skip(argument);
+            return;
+        }
+
+        enter();
+        if (info == INDEFINITE) {
+            while (!readEnd()) {
+                skipValue();
+            }
+        } else {
+            long items = major == MAP ? toSize(argument) * 2L : toSize(argument);
+            for (long i = 0; i < items; i++) {
+                skipValue();
+            }
+        }
+        leave();
+    }
+
+    protected boolean readEnd() throws DecodingException {
+        if (peek() == BREAK) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(int major, String name) throws DecodingException {
+        if (header() != major) {
+            throw new DecodingException("Expected a " + name);
+        }
+    }
+
+    /**
+     * Read the next item header, skipping its tags, and keep its additional
+     * information and argument. The argument of indefinite length items is -1
+     * and for simple values and floats it is their raw bits
+     *
+     * @return Major type
+     * @throws DecodingException
+     */
+    private int header() throws DecodingException {
+
+        int major;
+
+        do {
+            int initial = next();
+            major = initial >>> 5;
+            info = initial & 0x1f;
+
+            if (info < 24) {
+                argument = info;
+            } else if (info <= 27) {
+                argument = readBigEndian(1 << (info - 24));
+            } else if (info == INDEFINITE && major >= BYTES && major <= MAP) {
+                argument = -1;
+            } else {
+                throw new DecodingException("Invalid CBOR header 0x" + Integer.toHexString(initial));
+            }
+        } while (major == TAG);
+
+        return major;
+    }
+
+    private static double halfToDouble(int half) {
+        int exponent = half >> 10 & 0x1f;
+        int mantissa = half & 0x3ff;
+        double value;
+        if (exponent == 0) {
+            value = mantissa * Math.pow(2, -24);
+        } else if (exponent != 31) {
+            value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+        } else {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+}
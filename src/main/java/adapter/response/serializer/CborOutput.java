@@ -0,0 +1,98 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * CBOR writer (RFC 7049), integers take the shortest form and floating
+ * point numbers are written in double precision
+ *
+ * @author Peibol
+ */
+public class CborOutput extends BinaryOutput {
+
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1 << 5;
+    private static final int TEXT = 3 << 5;
+    private static final int ARRAY = 4 << 5;
+    private static final int MAP = 5 << 5;
+
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int DOUBLE = 0xfb;
+
+    public CborOutput(OutputStream stream) {
+        super(stream);
+    }
+
+    public CborOutput startMap(int size) throws IOException {
+        header(MAP, size);
+        return this;
+    }
+
+    public CborOutput startArray(int size) throws IOException {
+        header(ARRAY, size);
+        return this;
+    }
+
+    public CborOutput value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        int length = utf8Length(value);
+        header(TEXT, length);
+        writeUtf8(value, length);
+        return this;
+    }
+
+    public CborOutput value(long value) throws IOException {
+        if (value < 0) {
+            header(NEGATIVE, -1 - value);
+        } else {
+            header(UNSIGNED, value);
+        }
+        return this;
+    }
+
+    public CborOutput value(double value) throws IOException {
+        writeByte(DOUBLE);
+        writeBigEndian(Double.doubleToLongBits(value), 8);
+        return this;
+    }
+
+    public CborOutput value(boolean value) throws IOException {
+        writeByte(value ? TRUE : FALSE);
+        return this;
+    }
+
+    public CborOutput nullValue() throws IOException {
+        writeByte(NULL);
+        return this;
+    }
+
+    /**
+     * Major type and its argument, which is never negative
+     *
+     * @param major
+     * @param argument
+     * @throws IOException
+     */
+    private void header(int major, long argument) throws IOException {
+        if (argument < 24) {
+            writeByte(major | (int) argument);
+        } else if (argument <= 0xff) {
+            writeByte(major | 24);
+            writeBigEndian(argument, 1);
+        } else if (argument <= 0xffff) {
+            writeByte(major | 25);
+            writeBigEndian(argument, 2);
+        } else if (argument <= 0xffffffffL) {
+            writeByte(major | 26);
+            writeBigEndian(argument, 4);
+        } else {
+            writeByte(major | 27);
+            writeBigEndian(argument, 8);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+
+/**
+ * The input is not valid in the encoding it was read with
+ *
+ * @author Peibol
+ */
+public class DecodingException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DecodingException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,86 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Minimal Json writer, strings are escaped the way Gson does by default
+ * (HTML safe) so the output is byte for byte the same as Gson's
+ *
+ * @author Peibol
+ */
+public class JsonOutput extends Utf8Output {
+
+    private static final byte[] NULL = "null".getBytes();
+    private static final byte[] LINE_SEPARATOR = "\\u2028".getBytes();
+    private static final byte[] PARAGRAPH_SEPARATOR = "\\u2029".getBytes();
+    private static final byte[][] ESCAPES = new byte[128][];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = new byte[] { '\\', 'u', '0', '0', HEX[c >> 4], HEX[c & 0xf] };
+        }
+        ESCAPES['\t'] = new byte[] { '\\', 't' };
+        ESCAPES['\b'] = new byte[] { '\\', 'b' };
+        ESCAPES['\n'] = new byte[] { '\\', 'n' };
+        ESCAPES['\r'] = new byte[] { '\\', 'r' };
+        ESCAPES['\f'] = new byte[] { '\\', 'f' };
+        ESCAPES['"'] = new byte[] { '\\', '"' };
+        ESCAPES['\\'] = new byte[] { '\\', '\\' };
+        for (char c : new char[] { '<', '>', '&', '=', '\'' }) {
+            ESCAPES[c] = new byte[] { '\\', 'u', '0', '0', HEX[c >> 4], HEX[c & 0xf] };
+        }
+    }
+
+    public JsonOutput(OutputStream stream) {
+        super(stream);
+    }
+
+    public JsonOutput raw(byte[] bytes) throws IOException {
+        writeBytes(bytes);
+        return this;
+    }
+
+    public JsonOutput raw(char c) throws IOException {
+        writeByte(c);
+        return this;
+    }
+
+    public JsonOutput value(int value) throws IOException {
+        writeInt(value);
+        return this;
+    }
+
+    public JsonOutput value(Integer value) throws IOException {
+        return value == null ? raw(NULL) : value(value.intValue());
+    }
+
+    /**
+     * Quoted and escaped string, null is written as the null literal
+     *
+     * @param value
+     * @return
+     * @throws IOException
+     */
+    public JsonOutput value(String value) throws IOException {
+
+        if (value == null) {
+            return raw(NULL);
+        }
+
+        writeByte('"');
+        writeEscaped(value);
+        writeByte('"');
+        return this;
+    }
+
+    protected byte[] escape(char c) {
+        if (c < 128) {
+            return ESCAPES[c];
+        }
+        if (c == '\u2028') {
+            return LINE_SEPARATOR;
+        }
+        return c == '\u2029' ? PARAGRAPH_SEPARATOR : null;
+    }
+}
@@ -0,0 +1,215 @@
+package adapter.response.serializer;
+
+/**
+ * MessagePack reader, extension types and binary data are skipped
+ *
+ * @author Peibol
+ */
+public class MsgPackInput extends BinaryInput {
+
+    private static final int NIL = 0xc0;
+
+    public MsgPackInput(byte[] data) {
+        super(data);
+    }
+
+    public int readMapHeader() throws DecodingException {
+        int type = next();
+        if (type >= 0x80 && type <= 0x8f) {
+            return type & 0x0f;
+        }
+        switch (type) {
+            case 0xde:
+                return (int) readBigEndian(2);
+            case 0xdf:
+                return toSize(readBigEndian(4));
+        }
+        throw new DecodingException("Expected a map");
+    }
+
+    public int readArrayHeader() throws DecodingException {
+        int type = next();
+        if (type >= 0x90 && type <= 0x9f) {
+            return type & 0x0f;
+        }
+        switch (type) {
+            case 0xdc:
+                return (int) readBigEndian(2);
+            case 0xdd:
+                return toSize(readBigEndian(4));
+        }
+        throw new DecodingException("Expected an array");
+    }
+
+    public boolean readNull() throws DecodingException {
+        if (peek() == NIL) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    public String readString() throws DecodingException {
+        int type = next();
+        if (type >= 0xa0 && type <= 0xbf) {
+            return readUtf8(type & 0x1f);
+        }
+        switch (type) {
+            case NIL:
+                return null;
+            case 0xd9:
+                return readUtf8(readBigEndian(1));
+            case 0xda:
+                return readUtf8(readBigEndian(2));
+            case 0xdb:
+                return readUtf8(readBigEndian(4));
+        }
+        throw new DecodingException("Expected a string");
+    }
+
+    public long readLong() throws DecodingException {
+        int type = next();
+        if (type <= 0x7f) {
+            return type;
+        }
+        if (type >= 0xe0) {
+            return (byte) type;
+        }
+        switch (type) {
+            case 0xcc:
+                return readBigEndian(1);
+            case 0xcd:
+                return readBigEndian(2);
+            case 0xce:
+                return readBigEndian(4);
+            case 0xcf:
+                long value = readBigEndian(8);
+                if (value < 0) {
+                    throw new DecodingException("Integer out of range");
+                }
+                return value;
+            case 0xd0:
+                return (byte) readBigEndian(1);
+            case 0xd1:
+                return (short) readBigEndian(2);
+            case 0xd2:
+                return (int) readBigEndian(4);
+            case 0xd3:
+                return readBigEndian(8);
+            case 0xca:
+                return toLong(Float.intBitsToFloat((int) readBigEndian(4)));
+            case 0xcb:
+                return toLong(Double.longBitsToDouble(readBigEndian(8)));
+        }
+        throw new DecodingException("Expected an integer");
+    }
+
+    public void skipValue() throws DecodingException {
+        int type = next();
+
+        if (type <= 0x7f || type >= 0xe0) {
+            return;
+        }
+        if (type <= 0x8f) {
+            skipValues((type & 0x0f) * 2L);
+            return;
+        }
+        if (type <= 0x9f) {
+            skipValues(type & 0x0f);
+            return;
+        }
+        if (type <= 0xbf) {
+            skip(type & 0x1f);
+            return;
+        }
+
+        switch (type) {
+            case NIL:
+            case 0xc2:
+            case 0xc3:
+                return;
+            case 0xcc:
+            case 0xd0:
+                skip(1);
+                return;
+            case 0xcd:
+            case 0xd1:
+                skip(2);
+                return;
+            case 0xca:
+            case 0xce:
+            case 0xd2:
+                skip(4);
+                return;
+            case 0xcb:
+            case 0xcf:
+            case 0xd3:
+                skip(8);
+                return;
+            case 0xc4:
+            case 0xd9:
+                skip(readBigEndian(1));
+                return;
+            case 0xc5:
+            case 0xda:
+                skip(readBigEndian(2));
+                return;
+            case 0xc6:
+            case 0xdb:
+                skip(readBigEndian(4));
+                return;
+            case 0xd4:
+                skip(2);
+                return;
+            case 0xd5:
+                skip(3);
+                return;
+            case 0xd6:
+                skip(5);
+                return;
+            case 0xd7:
+                skip(9);
+                return;
+            case 0xd8:
+                skip(17);
+                return;
+            case 0xc7:
+                skip(readBigEndian(1) + 1);
+                return;
+            case 0xc8:
+                skip(readBigEndian(2) + 1);
+                return;
+            case 0xc9:
+                skip(readBigEndian(4) + 1);
+                return;
+            case 0xdc:
+                skipValues(readBigEndian(2));
+                return;
+            case 0xdd:
+                skipValues(readBigEndian(4));
+                return;
+            case 0xde:
+                skipValues(readBigEndian(2) * 2);
+                return;
+            case 0xdf:
+                skipValues(readBigEndian(4) * 2);
+                return;
+        }
+        throw new DecodingException("Invalid MessagePack type 0x" + Integer.toHexString(type));
+    }
+
+    /**
+     * Sizes are always known up front
+     */
+    protected boolean readEnd() {
+        return false;
+    }
+
+    private void skipValues(long count) throws DecodingException {
+        enter();
+        for (long i = 0; i < count; i++) {
+            skipValue();
+        }
+        leave();
+    }
+}
@@ -0,0 +1,117 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * MessagePack writer, integers and headers take the shortest form and
+ * floating point numbers are written in double precision
+ *
+ * @author Peibol
+ */
+public class MsgPackOutput extends BinaryOutput {
+
+    public MsgPackOutput(OutputStream stream) {
+        super(stream);
+    }
+
+    public MsgPackOutput startMap(int size) throws IOException {
+        if (size < 16) {
+            writeByte(0x80 | size);
+        } else if (size <= 0xffff) {
+            writeByte(0xde);
+            writeBigEndian(size, 2);
+        } else {
+            writeByte(0xdf);
+            writeBigEndian(size, 4);
+        }
+        return this;
+    }
+
+    public MsgPackOutput startArray(int size) throws IOException {
+        if (size < 16) {
+            writeByte(0x90 | size);
+        } else if (size <= 0xffff) {
+            writeByte(0xdc);
+            writeBigEndian(size, 2);
+        } else {
+            writeByte(0xdd);
+            writeBigEndian(size, 4);
+        }
+        return this;
+    }
+
+    public MsgPackOutput value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        int length = utf8Length(value);
+        if (length < 32) {
+            writeByte(0xa0 | length);
+        } else if (length <= 0xff) {
+            writeByte(0xd9);
+            writeBigEndian(length, 1);
+        } else if (length <= 0xffff) {
+            writeByte(0xda);
+            writeBigEndian(length, 2);
+        } else {
+            writeByte(0xdb);
+            writeBigEndian(length, 4);
+        }
+        writeUtf8(value, length);
+        return this;
+    }
+
+    public MsgPackOutput value(long value) throws IOException {
+        if (value >= 0) {
+            if (value < 0x80) {
+                writeByte((int) value);
+            } else if (value <= 0xff) {
+                writeByte(0xcc);
+                writeBigEndian(value, 1);
+            } else if (value <= 0xffff) {
+                writeByte(0xcd);
+                writeBigEndian(value, 2);
+            } else if (value <= 0xffffffffL) {
+                writeByte(0xce);
+                writeBigEndian(value, 4);
+            } else {
+                writeByte(0xcf);
+                writeBigEndian(value, 8);
+            }
+        } else {
+            if (value >= -32) {
+                writeByte((int) value);
+            } else if (value >= Byte.MIN_VALUE) {
+                writeByte(0xd0);
+                writeBigEndian(value, 1);
+            } else if (value >= Short.MIN_VALUE) {
+                writeByte(0xd1);
+                writeBigEndian(value, 2);
+            } else if (value >= Integer.MIN_VALUE) {
+                writeByte(0xd2);
+                writeBigEndian(value, 4);
+            } else {
+                writeByte(0xd3);
+                writeBigEndian(value, 8);
+            }
+        }
+        return this;
+    }
+
+    public MsgPackOutput value(double value) throws IOException {
+        writeByte(0xcb);
+        writeBigEndian(Double.doubleToLongBits(value), 8);
+        return this;
+    }
+
+    public MsgPackOutput value(boolean value) throws IOException {
+        writeByte(value ? 0xc3 : 0xc2);
+        return this;
+    }
+
+    public MsgPackOutput nullValue() throws IOException {
+        writeByte(0xc0);
+        return this;
+    }
+}
@@ -0,0 +1,249 @@
+package adapter.response.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import adapter.response.model.RoleModel;
+import adapter.response.model.UserModel;
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+
+/**
+ * Writes and reads the user API resources in a binary encoding, CBOR or
+ * MessagePack, with the same structure and field names as their Json
+ *
+ * @author Peibol
+ */
+public class UserApiBinarySerializer {
+
+    // Field names are encoded once for every format
+    private static final Map<BinaryFormat, Names> names = new EnumMap<>(BinaryFormat.class);
+
+    static {
+        for (BinaryFormat format : BinaryFormat.values()) {
+            names.put(format, new Names(format));
+        }
+    }
+
+    private static final class Names {
+
+        private final byte[] users;
+        private final byte[] user;
+        private final byte[] roles;
+        private final byte[] id;
+        private final byte[] username;
+        private final byte[] name;
+        private final byte[] page;
+
+        private Names(BinaryFormat format) {
+            users = encode(format, "users");
+            user = encode(format, "user");
+            roles = encode(format, "roles");
+            id = encode(format, "id");
+            username = encode(format, "username");
+            name = encode(format, "name");
+            page = encode(format, "page");
+        }
+
+        private static byte[] encode(BinaryFormat format, String value) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                format.createOutput(bytes).value(value).flush();
+            }
+            catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    public static void writeCollection(UserObject[] users, RoleObject[] roles, BinaryFormat format, OutputStream stream) throws IOException {
+
+        BinaryOutput out = format.createOutput(stream);
+        Names keys = names.get(format);
+
+        out.startMap(2);
+        out.raw(keys.users).startArray(users.length);
+        for (UserObject user : users) {
+            writeUser(out, keys, user);
+        }
+        out.raw(keys.roles);
+        writeRoles(out, keys, roles);
+
+        out.flush();
+    }
+
+    public static void writeResource(UserObject user, RoleObject[] roles, BinaryFormat format, OutputStream stream) throws IOException {
+
+        BinaryOutput out = format.createOutput(stream);
+        Names keys = names.get(format);
+
+        out.startMap(user != null ? 2 : 1);
+        if (user != null) {
+            out.raw(keys.user);
+            writeUser(out, keys, user);
+        }
+        out.raw(keys.roles);
+        writeRoles(out, keys, roles);
+
+        out.flush();
+    }
+
+    /**
+     * Read a user sent in a request, fields which are null or unknown are
+     * ignored like the Json adapter does
+     *
+     * @param in
+     * @return The user, null if the input is null
+     * @throws DecodingException
+     */
+    public static UserModel readUser(BinaryInput in) throws DecodingException {
+
+        if (in.readNull()) {
+            return null;
+        }
+
+        int id = 0;
+        String username = null;
+        String password = null;
+        Integer[] roles = null;
+
+        int size = in.readMapHeader();
+        for (int i = 0; in.hasNext(size, i); i++) {
+            String field = in.readString();
+            if (field == null) {
+                in.skipValue();
+                continue;
+            }
+            if (in.readNull()) {
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = in.readInteger();
+                    break;
+                case "username":
+                    username = in.readString();
+                    break;
+                case "password":
+                    password = in.readString();
+                    break;
+                case "roles":
+                    List<Integer> values = new ArrayList<>();
+                    int count = in.readArrayHeader();
+                    for (int j = 0; in.hasNext(count, j); j++) {
+                        values.add(in.readInteger());
+                    }
+                    roles = values.toArray(new Integer[values.size()]);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        return new UserModel(id, username, password, roles);
+    }
+
+    public static UserObject[] readUsers(BinaryInput in) throws DecodingException {
+
+        List<UserObject> users = new ArrayList<>();
+        int size = in.readArrayHeader();
+        for (int i = 0; in.hasNext(size, i); i++) {
+            users.add(readUser(in));
+        }
+        return users.toArray(new UserObject[users.size()]);
+    }
+
+    public static RoleObject[] readRoles(BinaryInput in) throws DecodingException {
+
+        List<RoleObject> roles = new ArrayList<>();
+        int size = in.readArrayHeader();
+        for (int i = 0; in.hasNext(size, i); i++) {
+            roles.add(readRole(in));
+        }
+        return roles.toArray(new RoleObject[roles.size()]);
+    }
+
+    private static RoleModel readRole(BinaryInput in) throws DecodingException {
+
+        if (in.readNull()) {
+            return null;
+        }
+
+        int id = 0;
+        String name = null;
+        String page = null;
+
+        int size = in.readMapHeader();
+        for (int i = 0; in.hasNext(size, i); i++) {
+            String field = in.readString();
+            if (field == null) {
+                in.skipValue();
+                continue;
+            }
+            if (in.readNull()) {
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = in.readInteger();
+                    break;
+                case "name":
+                    name = in.readString();
+                    break;
+                case "page":
+                    page = in.readString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        return new RoleModel(id, name, page);
+    }
+
+    private static void writeUser(BinaryOutput out, Names keys, UserObject user) throws IOException {
+
+        if (user == null) {
+            out.nullValue();
+            return;
+        }
+
+        Integer[] roleIds = user.getRoleIds();
+
+        // Null fields are left out like in Json
+        out.startMap((user.getId() != null ? 1 : 0) + (user.getUsername() != null ? 1 : 0) + (roleIds != null ? 1 : 0));
+        if (user.getId() != null) {
+            out.raw(keys.id).value(user.getId().longValue());
+        }
+        if (user.getUsername() != null) {
+            out.raw(keys.username).value(user.getUsername());
+        }
+        if (roleIds != null) {
+            out.raw(keys.roles).startArray(roleIds.length);
+            for (Integer roleId : roleIds) {
+                out.value(roleId);
+            }
+        }
+    }
+
+    private static void writeRoles(BinaryOutput out, Names keys, RoleObject[] roles) throws IOException {
+
+        out.startArray(roles.length);
+        for (RoleObject role : roles) {
+            out.startMap(1 + (role.getName() != null ? 1 : 0) + (role.getPage() != null ? 1 : 0));
+            out.raw(keys.id).value(role.getId());
+            if (role.getName() != null) {
+                out.raw(keys.name).value(role.getName());
+            }
+            if (role.getPage() != null) {
+                out.raw(keys.page).value(role.getPage());
+            }
+        }
+    }
+}
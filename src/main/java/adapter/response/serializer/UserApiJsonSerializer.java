@@ -0,0 +1,139 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+
+/**
+ * Writes the user API responses as Json straight from the domain objects,
+ * the output is the same Gson produces for ApiResponseUserCollection and
+ * ApiResponseUserResource
+ *
+ * @author Peibol
+ */
+public class UserApiJsonSerializer {
+
+    private static final byte[] COLLECTION_START = bytes("{\"users\":[");
+    private static final byte[] RESOURCE_USER = bytes("{\"user\":");
+    private static final byte[] ROLES_AFTER_USERS = bytes("],\"roles\":[");
+    private static final byte[] ROLES_AFTER_USER = bytes(",\"roles\":[");
+    private static final byte[] RESOURCE_ROLES = bytes("{\"roles\":[");
+    private static final byte[] END = bytes("]}");
+    private static final byte[] ID = bytes("{\"id\":");
+    private static final byte[] USERNAME = bytes(",\"username\":");
+    private static final byte[] ROLE_IDS = bytes(",\"roles\":[");
+    private static final byte[] FIRST_USERNAME = bytes("{\"username\":");
+    private static final byte[] FIRST_ROLE_IDS = bytes("{\"roles\":[");
+    private static final byte[] EMPTY_OBJECT = bytes("{}");
+    private static final byte[] CLOSE_OBJECT = bytes("}");
+    private static final byte[] NAME = bytes(",\"name\":");
+    private static final byte[] PAGE = bytes(",\"page\":");
+
+    /**
+     * @param users
+     * @param roles
+     * @param stream
+     * @param cache Fragments of the users, null to encode every user
+     * @throws IOException
+     */
+    public static void writeCollection(UserObject[] users, RoleObject[] roles, OutputStream stream, UserFragmentCache cache) throws IOException {
+
+        JsonOutput out = new JsonOutput(stream);
+
+        out.raw(COLLECTION_START);
+        for (int i = 0; i < users.length; i++) {
+            if (i > 0) {
+                out.raw(',');
+            }
+
+            byte[] fragment = cache != null ? cache.get(users[i], UserFragmentCache.Type.JSON) : null;
+
+            if (fragment != null) {
+                out.raw(fragment);
+            } else if (cache != null) {
+                out.startCapture();
+                writeUser(out, users[i]);
+                cache.put(users[i], UserFragmentCache.Type.JSON, out.endCapture());
+            } else {
+                writeUser(out, users[i]);
+            }
+        }
+        out.raw(ROLES_AFTER_USERS);
+        writeRoles(out, roles);
+        out.raw(END);
+
+        out.flush();
+    }
+
+    public static void writeResource(UserObject user, RoleObject[] roles, OutputStream stream) throws IOException {
+
+        JsonOutput out = new JsonOutput(stream);
+
+        if (user != null) {
+            out.raw(RESOURCE_USER);
+            writeUser(out, user);
+            out.raw(ROLES_AFTER_USER);
+        } else {
+            out.raw(RESOURCE_ROLES);
+        }
+        writeRoles(out, roles);
+        out.raw(END);
+
+        out.flush();
+    }
+
+    private static void writeUser(JsonOutput out, UserObject user) throws IOException {
+
+        // Null fields are left out like Gson does, so the first one written opens the object
+        boolean first = user.getId() == null;
+        if (!first) {
+            out.raw(ID).value(user.getId().intValue());
+        }
+
+        if (user.getUsername() != null) {
+            out.raw(first ? FIRST_USERNAME : USERNAME).value(user.getUsername());
+            first = false;
+        }
+
+        Integer[] roleIds = user.getRoleIds();
+        if (roleIds != null) {
+            out.raw(first ? FIRST_ROLE_IDS : ROLE_IDS);
+            first = false;
+            for (int i = 0; i < roleIds.length; i++) {
+                if (i > 0) {
+                    out.raw(',');
+                }
+                out.value(roleIds[i]);
+            }
+            out.raw(']');
+        }
+
+        out.raw(first ? EMPTY_OBJECT : CLOSE_OBJECT);
+    }
+
+    private static void writeRoles(JsonOutput out, RoleObject[] roles) throws IOException {
+
+        for (int i = 0; i < roles.length; i++) {
+            if (i > 0) {
+                out.raw(',');
+            }
+
+            RoleObject role = roles[i];
+            out.raw(ID).value(role.getId());
+            if (role.getName() != null) {
+                out.raw(NAME).value(role.getName());
+            }
+            if (role.getPage() != null) {
+                out.raw(PAGE).value(role.getPage());
+            }
+            out.raw('}');
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,171 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+
+/**
+ * Writes the user API responses as XML straight from the domain objects, the
+ * output is the same JAXB produces for ApiResponseUserCollection and
+ * ApiResponseUserResource, formatted or not
+ *
+ * @author Peibol
+ */
+public class UserApiXmlSerializer {
+
+    private static final byte[] HEADER = bytes("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+    private static final byte[] START = bytes("<ApiResponse>");
+    private static final byte[] END = bytes("</ApiResponse>");
+    private static final byte[] USERS_START = bytes("<users>");
+    private static final byte[] USERS_END = bytes("</users>");
+    private static final byte[] USERS_EMPTY = bytes("<users/>");
+    private static final byte[] USER_START = bytes("<user");
+    private static final byte[] ID = bytes(" id=\"");
+    private static final byte[] USER_END = bytes("</user>");
+    private static final byte[] ROLE_ID_START = bytes("<role_id>");
+    private static final byte[] ROLE_ID_END = bytes("</role_id>");
+    private static final byte[] ROLES_START = bytes("<roles>");
+    private static final byte[] ROLES_END = bytes("</roles>");
+    private static final byte[] ROLES_EMPTY = bytes("<roles/>");
+    private static final byte[] ROLE_START = bytes("<role id=\"");
+    private static final byte[] NAME = bytes(" name=\"");
+    private static final byte[] PAGE = bytes(" page=\"");
+    private static final byte[] EMPTY_END = bytes("/>");
+    private static final byte[][] INDENTS = { bytes("\n"), bytes("\n    "), bytes("\n        "), bytes("\n            ") };
+
+    private final XmlOutput out;
+    private final boolean formatted;
+
+    private UserApiXmlSerializer(OutputStream stream, boolean formatted) throws IOException {
+        this.out = new XmlOutput(stream);
+        this.formatted = formatted;
+
+        out.raw(HEADER);
+        indent(0);
+        out.raw(START);
+    }
+
+    /**
+     * @param users
+     * @param roles
+     * @param stream
+     * @param formatted
+     * @param cache Fragments of the users, null to encode every user
+     * @throws IOException
+     */
+    public static void writeCollection(UserObject[] users, RoleObject[] roles, OutputStream stream, boolean formatted, UserFragmentCache cache) throws IOException {
+
+        UserApiXmlSerializer serializer = new UserApiXmlSerializer(stream, formatted);
+        UserFragmentCache.Type type = formatted ? UserFragmentCache.Type.XML_FORMATTED : UserFragmentCache.Type.XML;
+
+        serializer.indent(1);
+        if (users.length == 0) {
+            serializer.out.raw(USERS_EMPTY);
+        } else {
+            serializer.out.raw(USERS_START);
+            for (UserObject user : users) {
+
+                byte[] fragment = cache != null ? cache.get(user, type) : null;
+
+                if (fragment != null) {
+                    serializer.out.raw(fragment);
+                } else if (cache != null) {
+                    serializer.out.startCapture();
+                    serializer.indent(2);
+                    serializer.writeUser(user, 2);
+                    cache.put(user, type, serializer.out.endCapture());
+                } else {
+                    serializer.indent(2);
+                    serializer.writeUser(user, 2);
+                }
+            }
+            serializer.indent(1);
+            serializer.out.raw(USERS_END);
+        }
+
+        serializer.writeRoles(roles);
+        serializer.end();
+    }
+
+    public static void writeResource(UserObject user, RoleObject[] roles, OutputStream stream, boolean formatted) throws IOException {
+
+        UserApiXmlSerializer serializer = new UserApiXmlSerializer(stream, formatted);
+
+        if (user != null) {
+            serializer.indent(1);
+            serializer.writeUser(user, 1);
+        }
+
+        serializer.writeRoles(roles);
+        serializer.end();
+    }
+
+    private void end() throws IOException {
+
+        indent(0);
+        out.raw(END);
+        if (formatted) {
+            out.raw('\n');
+        }
+        out.flush();
+    }
+
+    private void writeUser(UserObject user, int depth) throws IOException {
+
+        out.raw(USER_START);
+        if (user.getId() != null) {
+            out.raw(ID).value(user.getId().intValue()).raw('"');
+        }
+        out.attribute(NAME, user.getUsername());
+
+        Integer[] roleIds = user.getRoleIds();
+        if (roleIds == null || roleIds.length == 0) {
+            out.raw(EMPTY_END);
+            return;
+        }
+
+        out.raw('>');
+        for (Integer roleId : roleIds) {
+            if (roleId != null) {
+                indent(depth + 1);
+                out.raw(ROLE_ID_START).value(roleId).raw(ROLE_ID_END);
+            }
+        }
+        indent(depth);
+        out.raw(USER_END);
+    }
+
+    private void writeRoles(RoleObject[] roles) throws IOException {
+
+        indent(1);
+
+        if (roles.length == 0) {
+            out.raw(ROLES_EMPTY);
+            return;
+        }
+
+        out.raw(ROLES_START);
+        for (RoleObject role : roles) {
+            indent(2);
+            out.raw(ROLE_START).value(role.getId()).raw('"');
+            out.attribute(NAME, role.getName());
+            out.attribute(PAGE, role.getPage());
+            out.raw(EMPTY_END);
+        }
+        indent(1);
+        out.raw(ROLES_END);
+    }
+
+    private void indent(int depth) throws IOException {
+        if (formatted) {
+            out.raw(INDENTS[depth]);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+package adapter.response.serializer;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import domain.contract.entity.UserObject;
+
+/**
+ * Users of the collection responses already encoded, so a collection is
+ * assembled from the fragments of the users which did not change. A
+ * fragment is only used while the user has the same data it was encoded
+ * from, which keeps it right even if a read races an update, and it is
+ * dropped when the user is modified or deleted
+ *
+ * @author Peibol
+ */
+public class UserFragmentCache {
+
+    public enum Type {
+        JSON,
+        XML,
+        XML_FORMATTED
+    }
+
+    private final int capacity;
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static final class Entry {
+
+        private final String username;
+        private final Integer[] roleIds;
+        private final AtomicReferenceArray<byte[]> fragments = new AtomicReferenceArray<>(Type.values().length);
+
+        private Entry(UserObject user) {
+            this.username = user.getUsername();
+            this.roleIds = user.getRoleIds() != null ? user.getRoleIds().clone() : null;
+        }
+
+        private boolean matches(UserObject user) {
+            return Objects.equals(username, user.getUsername()) && Arrays.equals(roleIds, user.getRoleIds());
+        }
+    }
+
+    /**
+     * @param capacity Maximum number of users, the ones over it are encoded every time
+     */
+    public UserFragmentCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Fragment of the user, null when it is not cached or the user changed
+     *
+     * @param user
+     * @param type
+     * @return
+     */
+    public byte[] get(UserObject user, Type type) {
+
+        Entry entry = user.getId() != null ? entries.get(user.getId()) : null;
+        byte[] fragment = entry != null && entry.matches(user) ? entry.fragments.get(type.ordinal()) : null;
+
+        if (fragment != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return fragment;
+    }
+
+    public void put(UserObject user, Type type, byte[] fragment) {
+
+        if (user.getId() == null) {
+            return;
+        }
+
+        Entry entry = entries.get(user.getId());
+
+        if (entry == null || !entry.matches(user)) {
+            if (entry == null && entries.size() >= capacity) {
+                return;
+            }
+            entry = new Entry(user);
+            entries.put(user.getId(), entry);
+        }
+
+        entry.fragments.set(type.ordinal(), fragment);
+    }
+
+    public void invalidate(int uid) {
+        entries.remove(uid);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,238 @@
+package adapter.response.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Buffered writer encoding straight to UTF-8 bytes, the subclasses decide
+ * which characters are escaped and how
+ *
+ * @author Peibol
+ */
+public abstract class Utf8Output {
+
+    protected static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream stream;
+    private final byte[] buffer = new byte[8192];
+    private int count = 0;
+
+    // Start in the buffer of the bytes being captured, -1 when not capturing
+    private int captureStart = -1;
+    private ByteArrayOutputStream captured = null;
+
+    protected Utf8Output(OutputStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Escape sequence for the character, null when it is written as is
+     *
+     * @param c
+     * @return
+     */
+    protected abstract byte[] escape(char c);
+
+    protected final void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - count) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                stream.write(bytes);
+                if (captureStart >= 0) {
+                    keep(bytes, 0, bytes.length);
+                }
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    protected final void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    /**
+     * Lowest bytes of the value, most significant first
+     *
+     * @param value
+     * @param length
+     * @throws IOException
+     */
+    protected final void writeBigEndian(long value, int length) throws IOException {
+        if (count > buffer.length - length) {
+            flushBuffer();
+        }
+        for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+            buffer[count++] = (byte) (value >>> shift);
+        }
+    }
+
+    protected final void writeInt(int value) throws IOException {
+        if (count > buffer.length - 11) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                writeBytes(Integer.toString(value).getBytes());
+                return;
+            }
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int start = count;
+        do {
+            buffer[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    protected final void writeEscaped(String value) throws IOException {
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            // Escapes are no longer than 6 bytes, characters no longer than 4
+            if (count > buffer.length - 6) {
+                flushBuffer();
+            }
+
+            byte[] escape = escape(c);
+            if (escape != null) {
+                System.arraycopy(escape, 0, buffer, count, escape.length);
+                count += escape.length;
+            } else if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xc0 | c >> 6);
+                buffer[count++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[count++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[count++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates become '?' like String.getBytes does
+                buffer[count++] = '?';
+            } else {
+                buffer[count++] = (byte) (0xe0 | c >> 12);
+                buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[count++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+    }
+
+    /**
+     * Write the string without escapes, ASCII strings are copied as they are
+     *
+     * @param value
+     * @param length Length of the string as given by utf8Length
+     * @throws IOException
+     */
+    protected final void writeUtf8(String value, int length) throws IOException {
+
+        if (length != value.length() || length > buffer.length) {
+            writeEscaped(value);
+            return;
+        }
+
+        if (count > buffer.length - length) {
+            flushBuffer();
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Length of the string once written by writeEscaped without escapes
+     *
+     * @param value
+     * @return
+     */
+    protected static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    length += 2;
+                }
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Start keeping a copy of what is written from now on
+     */
+    public void startCapture() {
+        captureStart = count;
+        captured = null;
+    }
+
+    /**
+     * Stop capturing
+     *
+     * @return The bytes written since startCapture
+     */
+    public byte[] endCapture() {
+
+        byte[] bytes;
+
+        if (captured == null) {
+            bytes = Arrays.copyOfRange(buffer, captureStart, count);
+        } else {
+            captured.write(buffer, captureStart, count - captureStart);
+            bytes = captured.toByteArray();
+        }
+
+        captureStart = -1;
+        captured = null;
+        return bytes;
+    }
+
+    /**
+     * Write the buffered bytes to the stream, the stream is not closed
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        stream.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            if (captureStart >= 0) {
+                keep(buffer, captureStart, count - captureStart);
+                captureStart = 0;
+            }
+            stream.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void keep(byte[] bytes, int offset, int length) {
+        if (captured == null) {
+            captured = new ByteArrayOutputStream(Math.max(length * 2, 64));
+        }
+        captured.write(bytes, offset, length);
+    }
+}
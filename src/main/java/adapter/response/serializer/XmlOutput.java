@@ -0,0 +1,68 @@
+package adapter.response.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Minimal XML writer, attribute values are escaped the way the JAXB
+ * reference implementation does, whitespace included as character
+ * references so readers do not normalise it away
+ *
+ * @author Peibol
+ */
+public class XmlOutput extends Utf8Output {
+
+    private static final byte[][] ESCAPES = new byte[128][];
+
+    static {
+        ESCAPES['&'] = "&amp;".getBytes();
+        ESCAPES['<'] = "&lt;".getBytes();
+        ESCAPES['>'] = "&gt;".getBytes();
+        ESCAPES['"'] = "&quot;".getBytes();
+        ESCAPES['\t'] = "&#x9;".getBytes();
+        ESCAPES['\n'] = "&#xA;".getBytes();
+        ESCAPES['\r'] = "&#xD;".getBytes();
+    }
+
+    public XmlOutput(OutputStream stream) {
+        super(stream);
+    }
+
+    public XmlOutput raw(byte[] bytes) throws IOException {
+        writeBytes(bytes);
+        return this;
+    }
+
+    public XmlOutput raw(char c) throws IOException {
+        writeByte(c);
+        return this;
+    }
+
+    public XmlOutput value(int value) throws IOException {
+        writeInt(value);
+        return this;
+    }
+
+    /**
+     * Attribute with its value quoted and escaped, nothing is written when
+     * the value is null
+     *
+     * @param name Attribute name with its leading space and trailing ="
+     * @param value
+     * @return
+     * @throws IOException
+     */
+    public XmlOutput attribute(byte[] name, String value) throws IOException {
+
+        if (value != null) {
+            writeBytes(name);
+            writeEscaped(value);
+            writeByte('"');
+        }
+        return this;
+    }
+
+    protected byte[] escape(char c) {
+        return c < 128 ? ESCAPES[c] : null;
+    }
+}
@@ -1,7 +1,11 @@
 package core;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -10,6 +14,9 @@ import com.google.code.regexp.Matcher;
 
 public class Helper {
 
+    private static final DateTimeFormatter GMT_DATE_FORMAT =
+        DateTimeFormatter.ofPattern("EEE, d MMM yyyy HH:mm:ss z", Locale.ENGLISH).withZone(ZoneId.of("GMT"));
+
     /**
      * Return list of fixed format paired elements contained in a string, as a Map
      * The regular expression will define the extraction pattern Used for
@@ -98,6 +105,29 @@ public class Helper {
         return null;
     }
 
+    /**
+     * Reads the whole InputStream, an empty array if it fails
+     * 
+     * @param stream
+     * @return
+     */
+    public static byte[] convertInputStreamToBytes(InputStream stream) {
+
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            return new byte[0];
+        }
+    }
+
     /**
      * Converts InputStream object to a string
      * 
@@ -114,15 +144,12 @@ public class Helper {
     }
 
     /**
-     * Formats date as GMT. Used in session cookies.
+     * Formats epoch milliseconds as GMT. Used in session cookies
      * 
-     * @param date
+     * @param epochMillis
      * @return
      */
-    public static String getGMTDateNotation(Date date) {
-
-        SimpleDateFormat sdf = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss z");
-        sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-        return sdf.format(date);
+    public static String getGMTDateNotation(long epochMillis) {
+        return GMT_DATE_FORMAT.format(Instant.ofEpochMilli(epochMillis));
     }
 }
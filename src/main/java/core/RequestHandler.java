@@ -5,9 +5,9 @@ import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.time.LocalDateTime;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -19,12 +19,15 @@ import adapter.controller.api.UserController;
 import adapter.controller.application.ApplicationController;
 import adapter.response.model.application.ApplicationResponse;
 
+import core.database.DatabaseRelational;
 import core.entity.Cookie;
 import core.entity.HttpRequest;
 import core.entity.HttpResponse;
 import core.entity.Session;
 import core.entity.factory.CookieFactory;
 import core.entity.factory.RequestFactory;
+import core.templating.TemplateEngine;
+import core.templating.TemplateOutputCache;
 
 /**
  * Request handler
@@ -34,6 +37,19 @@ import core.entity.factory.RequestFactory;
  */
 public class RequestHandler implements HttpHandler {
 
+    /**
+     * The response failed after its headers were sent, the connection is
+     * dropped so the client does not take the partial body as complete
+     */
+    private static class ResponseAbortedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private ResponseAbortedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
     private static final int PATH = 0;
     private static final int CONTROLLER = 1;
     private static final int METHOD = 2;
@@ -82,7 +98,8 @@ public class RequestHandler implements HttpHandler {
 
                                 // Session loss check
                                 if (session != null && session.isExpired()) {
-                                    Server.removeSession(session.getSessionToken());
+                                    Server.removeSession(session);
+                                    session = null;
                                 }
 
                                 // Identify appropriate controller and method
@@ -118,6 +135,10 @@ public class RequestHandler implements HttpHandler {
                 }
                 respondResourceNotFound(exchange);
             }
+            catch (ResponseAbortedException e) {
+                // Left to the server, which closes the connection
+                throw e;
+            }
             catch (Exception e) {
                 e.printStackTrace(System.out);
                 switch (controllerName) {
@@ -133,6 +154,10 @@ public class RequestHandler implements HttpHandler {
         catch (IOException e) {
             e.printStackTrace(System.out);
         }
+        finally {
+            // Connections are bound for the length of the request
+            DatabaseRelational.release();
+        }
     }
 
     /**
@@ -193,26 +218,19 @@ public class RequestHandler implements HttpHandler {
             session = appResponse.getSession();
         }
 
-        if (session != null) {
+        if (session != null && !session.isInvalidated()) {
             session.touch();
-            Date sessionExpiration = session.getExpiryTime();
 
             // Add session cookie to the response
             String sessionCookie =
-                String.format(
-                    "sessionToken=%s; Expires=%s;",
-                    session.getSessionToken(),
-                    Helper.getGMTDateNotation(sessionExpiration)
-                );
+                "sessionToken=" + Server.getSessionCookieValue(session) +
+                "; Expires=" + Helper.getGMTDateNotation(session.getExpiryTime()) + ";";
             exchange.getResponseHeaders().set("Set-Cookie", sessionCookie);
         } else {
             // Add session cookie to the response in order to remove session
             // cookie
             String sessionCookie =
-                String.format(
-                    "sessionToken=; Expires=%s;",
-                    Helper.getGMTDateNotation(new Date())
-                );
+                "sessionToken=; Expires=" + Helper.getGMTDateNotation(System.currentTimeMillis()) + ";";
             exchange.getResponseHeaders().set("Set-Cookie", sessionCookie);
         }
     }
@@ -227,27 +245,108 @@ public class RequestHandler implements HttpHandler {
      */
     private HttpResponse createHttpResponse(HttpExchange exchange, ApplicationResponse appResponse) throws Exception {
 
-        // If the application specified a view and context data, use the
-        // template parser to generate response body
-        String body = "";
-        if (appResponse.getView() != null) {
-
-            // Render view
-            body = Server.getTemplateParser().parseTemplate(appResponse.getView(), appResponse.getData());
-        }
-
         switch (appResponse.getResponseCode()) {
             case ApplicationResponse.RESPONSE_OK:
-                return new HttpResponse(HttpURLConnection.HTTP_OK, body);
+                return createViewResponse(exchange, HttpURLConnection.HTTP_OK, appResponse);
             case ApplicationResponse.RESPONSE_DENIED:
                 return new HttpResponse(HttpURLConnection.HTTP_FORBIDDEN, "<head><meta charset=\"UTF-8\"></head><body><h1>403 Forbidden (~_^)</h1></body>");
             case ApplicationResponse.RESPONSE_REDIRECT:
             default:
                 exchange.getResponseHeaders().set("Location", appResponse.getLocation());
-                return new HttpResponse(HttpURLConnection.HTTP_SEE_OTHER, body);
+                return createViewResponse(exchange, HttpURLConnection.HTTP_SEE_OTHER, appResponse);
         }
     }
 
+    /**
+     * If the application specified a view and context data, the response
+     * body is taken from the output cache or rendered by the template engine
+     * straight into the response stream
+     *
+     * @param exchange
+     * @param code
+     * @param appResponse
+     * @return
+     * @throws Exception
+     */
+    private HttpResponse createViewResponse(HttpExchange exchange, int code, ApplicationResponse appResponse) throws Exception {
+
+        String view = appResponse.getView();
+        Map<String, Object> data = appResponse.getData();
+
+        if (view == null) {
+            return new HttpResponse(code);
+        }
+
+        TemplateEngine engine = Server.getTemplateParser();
+        TemplateOutputCache cache = Server.getTemplateOutputCache();
+
+        if (cache == null) {
+            return new HttpResponse(code, stream -> engine.render(view, data, stream));
+        }
+
+        HttpResponse response;
+        TemplateOutputCache.Page page = cache.get(view, data);
+
+        if (page == null) {
+            response = new HttpResponse(code, stream -> cache.render(engine, view, data, stream));
+        } else if (page.getGzipBody() != null && acceptsGzip(exchange)) {
+            response = new HttpResponse(code, page.getGzipBody());
+            response.setHeader("Content-Encoding", "gzip");
+        } else {
+            response = new HttpResponse(code, page.getBody());
+        }
+
+        response.setHeader("Vary", "Accept-Encoding");
+        return response;
+    }
+
+    /**
+     * Whether the client takes gzip bodies, named or through a wildcard,
+     * with a quality other than zero
+     *
+     * @param exchange
+     * @return
+     */
+    private boolean acceptsGzip(HttpExchange exchange) {
+
+        List<String> values = exchange.getRequestHeaders().get("Accept-Encoding");
+        if (values == null) {
+            return false;
+        }
+
+        Double gzip = null;
+        Double wildcard = null;
+
+        for (String value : values) {
+            for (String coding : value.split(",")) {
+                String[] params = coding.split(";");
+                String name = params[0].trim().toLowerCase();
+
+                double quality = 1;
+                for (int i = 1; i < params.length; i++) {
+                    String[] param = params[i].split("=", 2);
+                    if (param.length == 2 && param[0].trim().equalsIgnoreCase("q")) {
+                        try {
+                            quality = Double.parseDouble(param[1].trim());
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+
+                if (name.equals("gzip") || name.equals("x-gzip")) {
+                    gzip = quality;
+                } else if (name.equals("*")) {
+                    wildcard = quality;
+                }
+            }
+        }
+
+        // A coding named explicitly overrides the wildcard
+        Double quality = gzip != null ? gzip : wildcard;
+        return quality != null && quality > 0;
+    }
+
     /**
      * Send the HTTP response to the client
      * 
@@ -286,9 +385,23 @@ public class RequestHandler implements HttpHandler {
         OutputStream stream = exchange.getResponseBody();
         if (httpCode == HttpURLConnection.HTTP_NO_CONTENT) {
             exchange.sendResponseHeaders(httpCode, -1);
+        } else if (response.getBodyWriter() != null) {
+            // Length is unknown until the body is written, use chunked encoding
+            exchange.sendResponseHeaders(httpCode, 0);
+            try {
+                response.getBodyWriter().write(stream);
+            } catch (Exception e) {
+                // Closing the stream would end the chunked body as if it
+                // were complete
+                System.out.println("Response to " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " aborted");
+                e.printStackTrace(System.out);
+                throw new ResponseAbortedException(e);
+            }
+            stream.close();
         } else {
-            exchange.sendResponseHeaders(httpCode, response.getBody().getBytes().length);
-            stream.write(response.getBody().getBytes());
+            byte[] body = response.getEncodedBody();
+            exchange.sendResponseHeaders(httpCode, body.length);
+            stream.write(body);
             stream.close();
         }
     }
@@ -1,6 +1,8 @@
 package core;
 
+import java.io.File;
 import java.io.InputStream;
+import java.net.URL;
 
 public abstract class ResourceLoader {
 
@@ -37,4 +39,24 @@ public abstract class ResourceLoader {
             return null;
         }
     }
+
+    /**
+     * Last modification time of a resource found in the filesystem, 0 when
+     * unknown, for instance when it is packed in the jar
+     *
+     * @param path
+     * @return
+     */
+    protected static long getResourceLastModified(String path) {
+
+        try {
+            URL resource = ResourceLoader.class.getClassLoader().getResource(path);
+            if (resource != null && "file".equals(resource.getProtocol())) {
+                return new File(resource.toURI()).lastModified();
+            }
+            return 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
 }
@@ -1,12 +1,17 @@
 package core;
 
+import adapter.response.model.api.ApiResponse;
+import adapter.response.model.application.ApplicationResponse;
+import adapter.response.serializer.UserFragmentCache;
 import com.sun.net.httpserver.HttpServer;
 import core.database.Database;
 import core.database.factory.DatabaseFactory;
 import core.entity.Session;
-import core.entity.factory.SessionFactory;
 import core.entity.factory.TemplateFactory;
+import core.session.SessionStore;
+import core.session.factory.SessionStoreFactory;
 import core.templating.TemplateEngine;
+import core.templating.TemplateOutputCache;
 
 import javax.enterprise.inject.se.SeContainer;
 import javax.enterprise.inject.se.SeContainerInitializer;
@@ -47,12 +52,37 @@ public class Server {
         MONGO_PORT,
         MONGO_DB,
         MONGO_USER,
-        MONGO_PASS
+        MONGO_PASS,
+        SESSION_STORE,
+        SESSION_KEYS,
+        SESSION_SNAPSHOT_FILE,
+        SESSION_SNAPSHOT_INTERVAL,
+        TEMPLATE_CACHE_SIZE,
+        XML_FORMATTED_OUTPUT,
+        USER_FRAGMENT_CACHE_SIZE,
+        DB_POOL_MIN_SIZE,
+        DB_POOL_MAX_SIZE,
+        DB_POOL_TIMEOUT,
+        DB_POOL_LEAK_THRESHOLD,
+        DB_STATEMENT_CACHE_SIZE,
+        SQLITE_JOURNAL_MODE,
+        SQLITE_SYNCHRONOUS,
+        SQLITE_MMAP_SIZE,
+        SQLITE_CACHE_SIZE,
+        SQLITE_TEMP_STORE,
+        SQLITE_BUSY_TIMEOUT,
+        SQLITE_SINGLE_WRITER,
+        SQLITE_WRITER_GROUP_SIZE,
+        DB_READ_REPLICAS,
+        DB_REPLICA_EJECTION_TIME
     }
 
     private static boolean debug = false;
     private static final Map<Config, String> config = new HashMap<>();
-    private static final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private static SessionStore sessionStore = null;
+    private static TemplateOutputCache templateOutputCache = null;
+    private static UserFragmentCache userFragmentCache = null;
+    private static final ConcurrentHashMap<Integer, Long> userVersions = new ConcurrentHashMap<>();
 
     public static void Initialize(String[] args) {
         try {
@@ -69,12 +99,36 @@ public class Server {
                 loadConfig(entry);
             }
 
+            // Init session store
+            sessionStore = SessionStoreFactory.getSessionStore();
+
             // Init database
             Database database = getDatabase();
             if (database != null && !database.connect()) {
                 throw new Exception("Database connection refused");
             }
 
+            // Warm up templates
+            TemplateEngine templateEngine = getTemplateParser();
+            for (String view : ApplicationResponse.TEMPLATES) {
+                templateEngine.preload(view);
+            }
+
+            // Warm up XML bindings
+            ApiResponse.preloadXml();
+
+            // Init rendered page cache, templates may change on disk in debug mode
+            long templateCacheSize = Long.valueOf(getConfig(Config.TEMPLATE_CACHE_SIZE));
+            if (!debug && templateCacheSize > 0) {
+                templateOutputCache = new TemplateOutputCache(templateCacheSize);
+            }
+
+            // Init cache of encoded users for the API collection
+            int userFragmentCacheSize = Integer.valueOf(getConfig(Config.USER_FRAGMENT_CACHE_SIZE));
+            if (userFragmentCacheSize > 0) {
+                userFragmentCache = new UserFragmentCache(userFragmentCacheSize);
+            }
+
             // Init HTTP server
             InetSocketAddress socket = new InetSocketAddress(Integer.valueOf(getConfig(Config.PORT)));
             RequestHandler handler = new RequestHandler();
@@ -113,6 +167,24 @@ public class Server {
         return TemplateFactory.getTemplateParser();
     }
 
+    /**
+     * Cache of rendered views, null when disabled
+     *
+     * @return
+     */
+    public static TemplateOutputCache getTemplateOutputCache() {
+        return templateOutputCache;
+    }
+
+    /**
+     * Cache of users encoded for the API, null when disabled
+     *
+     * @return
+     */
+    public static UserFragmentCache getUserFragmentCache() {
+        return userFragmentCache;
+    }
+
     public static TemplateEngine.Type getTemplateEngineType() {
         try {
             return TemplateEngine.Type.valueOf(
@@ -124,6 +196,17 @@ public class Server {
         }
     }
 
+    public static SessionStore.Type getSessionStoreType() {
+        try {
+            return SessionStore.Type.valueOf(
+                    getConfig(Config.SESSION_STORE)
+            );
+        }
+        catch(IllegalArgumentException e){
+            return SessionStore.Type.UNKNOWN;
+        }
+    }
+
     private static void loadConfig(Config config) throws IOException{
         String value = System.getenv(ENVIRONMENT_VARIABLE_PREFIX + config.name());
         if(value == null){
@@ -133,17 +216,38 @@ public class Server {
     }
 
     public static Session createSession(int uid) {
-        Session session = SessionFactory.create(uid);
-        sessions.put(session.getSessionToken(), session);
-        return session;
+        return sessionStore.create(uid);
     }
 
-    public static void removeSession(String sessionToken) {
-        sessions.remove(sessionToken);
+    public static void removeSession(Session session) {
+        sessionStore.remove(session);
     }
 
-    public static Session getSession(String sessionToken) {
-        return sessions.get(sessionToken);
+    public static Session getSession(String cookieValue) {
+        return sessionStore.retrieve(cookieValue);
+    }
+
+    public static String getSessionCookieValue(Session session) {
+        return sessionStore.getCookieValue(session);
+    }
+
+    /**
+     * Version of the user data, bumped every time the user is modified, used
+     * to tell whether the profile cached in a session or the encoded user is
+     * still valid
+     *
+     * @param uid
+     * @return
+     */
+    public static long getUserVersion(int uid) {
+        return userVersions.getOrDefault(uid, 0L);
+    }
+
+    public static void bumpUserVersion(int uid) {
+        userVersions.merge(uid, 1L, Long::sum);
+        if (userFragmentCache != null) {
+            userFragmentCache.invalidate(uid);
+        }
     }
 
     private static void setConfig(Config name, String value){
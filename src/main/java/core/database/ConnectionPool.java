@@ -0,0 +1,419 @@
+package core.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pool of JDBC connections without locks, idle connections wait in a
+ * concurrent deque and the number of open connections is kept in an atomic
+ * counter. Connections idle for a while are validated before being handed
+ * out, broken ones are closed and replaced by new ones, and connections kept
+ * borrowed for longer than the leak threshold are reported along with the
+ * place they were borrowed from
+ *
+ * @author Peibol
+ */
+public class ConnectionPool {
+
+    // Connections used more recently than this are not validated again
+    private static final long VALIDATION_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * Opens a new physical connection to the database
+     */
+    @FunctionalInterface
+    public interface Connector {
+        Connection open() throws Exception;
+    }
+
+    private final class Lease {
+
+        private final Connection connection;
+        private final StatementCache statements;
+        private long lastUsed = System.nanoTime();
+        private volatile long borrowedAt;
+        private volatile Throwable borrowedFrom;
+        private volatile boolean reported;
+
+        private Lease(Connection connection) {
+            this.connection = connection;
+            this.statements = new StatementCache(connection, statementCacheSize, statementHits, statementMisses);
+        }
+    }
+
+    private final Connector connector;
+    private final int minSize;
+    private final int maxSize;
+    private final long timeoutNanos;
+    private final long leakThresholdNanos;
+    private final int statementCacheSize;
+
+    // Most recently released connections are handed out first, they are the
+    // ones less likely to need a validation
+    private final ConcurrentLinkedDeque<Lease> idle = new ConcurrentLinkedDeque<>();
+    private final ConcurrentHashMap<Connection, Lease> borrowed = new ConcurrentHashMap<>();
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private ScheduledExecutorService leakDetection;
+    private volatile boolean closed = false;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    /**
+     * @param connector
+     * @param minSize Connections opened up front and kept open
+     * @param maxSize Maximum number of open connections
+     * @param timeoutMillis Maximum time to wait for a free connection
+     * @param leakThresholdMillis Time after which a borrowed connection is
+     *        reported as leaked, 0 disables leak detection
+     * @param statementCacheSize Prepared statements kept open per connection,
+     *        0 disables the cache
+     * @throws SQLException if the minimum number of connections can not be opened
+     */
+    public ConnectionPool(Connector connector, int minSize, int maxSize, long timeoutMillis, long leakThresholdMillis, int statementCacheSize) throws SQLException {
+
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("ConnectionPool: Invalid pool size " + minSize + ".." + maxSize);
+        }
+
+        this.connector = connector;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.statementCacheSize = statementCacheSize;
+
+        try {
+            for (int i = 0; i < minSize; i++) {
+                size.incrementAndGet();
+                idle.offerFirst(new Lease(open()));
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+
+        if (leakThresholdMillis > 0) {
+            startLeakDetection(leakThresholdMillis);
+        }
+    }
+
+    /**
+     * Take a connection from the pool, opening a new one if none is idle and
+     * the pool is not full, or waiting for one to be released otherwise
+     *
+     * @return
+     * @throws SQLException if no connection becomes available in time or
+     *         the pool is closed
+     */
+    public Connection borrow() throws SQLException {
+
+        Lease lease = tryBorrow();
+
+        if (lease == null) {
+            lease = await();
+        }
+
+        borrows.increment();
+        lease.borrowedAt = System.nanoTime();
+        lease.reported = false;
+        if (leakThresholdNanos > 0) {
+            lease.borrowedFrom = new Throwable("Connection borrowed by " + Thread.currentThread().getName());
+        }
+        borrowed.put(lease.connection, lease);
+        return lease.connection;
+    }
+
+    /**
+     * Give the connection back to the pool, broken connections are closed
+     * instead and the pool tops itself up to its minimum size. Once the pool
+     * is closed every connection given back is closed
+     *
+     * @param connection
+     * @param broken The connection failed and must not be reused
+     * @return false if the connection was not borrowed from this pool
+     */
+    public boolean release(Connection connection, boolean broken) {
+
+        Lease lease = borrowed.remove(connection);
+        if (lease == null) {
+            return false;
+        }
+
+        lease.borrowedFrom = null;
+        if (broken || closed) {
+            discard(lease);
+            replenish();
+        } else {
+            lease.lastUsed = System.nanoTime();
+            idle.offerFirst(lease);
+            if (closed) {
+                // Closed while it was being given back
+                discardIdle();
+            }
+        }
+
+        Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        return true;
+    }
+
+    /**
+     * Close the idle connections, borrowed ones are closed when released
+     */
+    public void close() {
+        closed = true;
+        if (leakDetection != null) {
+            leakDetection.shutdownNow();
+        }
+        discardIdle();
+
+        // Borrows waiting for a connection give up
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+
+    /**
+     * Prepared statements of a borrowed connection
+     *
+     * @param connection
+     * @return
+     */
+    public StatementCache getStatementCache(Connection connection) {
+        Lease lease = borrowed.get(connection);
+        return lease != null ? lease.statements : null;
+    }
+
+    public int getSize() {
+        return size.get();
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public int getBorrowed() {
+        return borrowed.size();
+    }
+
+    public long getBorrows() {
+        return borrows.sum();
+    }
+
+    /**
+     * Number of borrows which had to wait for a connection to be released
+     *
+     * @return
+     */
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    public long getLeaks() {
+        return leaks.sum();
+    }
+
+    public long getStatementHits() {
+        return statementHits.sum();
+    }
+
+    public long getStatementMisses() {
+        return statementMisses.sum();
+    }
+
+    private Lease tryBorrow() throws SQLException {
+
+        if (closed) {
+            throw new SQLException("ConnectionPool: Pool closed");
+        }
+
+        Lease lease;
+        while ((lease = idle.pollFirst()) != null) {
+            if (isValid(lease)) {
+                return lease;
+            }
+            discard(lease);
+        }
+
+        // Reserve a slot before opening, so concurrent borrows never exceed the maximum
+        int current;
+        while ((current = size.get()) < maxSize) {
+            if (size.compareAndSet(current, current + 1)) {
+                lease = new Lease(open());
+                if (closed) {
+                    // Closed while it was being opened
+                    discard(lease);
+                    throw new SQLException("ConnectionPool: Pool closed");
+                }
+                return lease;
+            }
+        }
+
+        return null;
+    }
+
+    private Lease await() throws SQLException {
+
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        Thread thread = Thread.currentThread();
+
+        waits.increment();
+        waiters.add(thread);
+
+        try {
+            while (true) {
+                // Checked again after queueing, a release in between would not have woken us up
+                Lease lease = tryBorrow();
+                if (lease != null) {
+                    long waited = System.nanoTime() - start;
+                    waitNanos.add(waited);
+                    maxWaitNanos.accumulateAndGet(waited, Math::max);
+                    return lease;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeouts.increment();
+                    waitNanos.add(System.nanoTime() - start);
+                    throw new SQLException("ConnectionPool: Timed out waiting for a connection, " + borrowed.size() + " of " + maxSize + " in use");
+                }
+
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiters.remove(thread);
+        }
+    }
+
+    private Connection open() throws SQLException {
+        try {
+            return connector.open();
+        } catch (Exception e) {
+            size.decrementAndGet();
+            throw e instanceof SQLException ? (SQLException) e : new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private boolean isValid(Lease lease) {
+        if (System.nanoTime() - lease.lastUsed < VALIDATION_INTERVAL) {
+            return true;
+        }
+        try {
+            return lease.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (AbstractMethodError | SQLFeatureNotSupportedException e) {
+            // Pre JDBC 4 drivers, like older sqlite-jdbc, need a query instead
+            try (Statement stmt = lease.connection.createStatement()) {
+                stmt.execute("SELECT 1");
+                return true;
+            } catch (SQLException ex) {
+                return false;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discardIdle() {
+        Lease lease;
+        while ((lease = idle.pollFirst()) != null) {
+            discard(lease);
+        }
+    }
+
+    private void discard(Lease lease) {
+        size.decrementAndGet();
+        lease.statements.close();
+        try {
+            lease.connection.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Reconnect after a connection was dropped, failures are left for the
+     * next borrow to retry
+     */
+    private void replenish() {
+        int current;
+        while (!closed && (current = size.get()) < minSize) {
+            if (size.compareAndSet(current, current + 1)) {
+                try {
+                    idle.offerFirst(new Lease(open()));
+                    reconnects.increment();
+                } catch (SQLException e) {
+                    System.out.println(e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    private void startLeakDetection(long leakThresholdMillis) {
+
+        leakDetection = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-leak-detection");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = Math.max(leakThresholdMillis / 2, 1);
+        leakDetection.scheduleWithFixedDelay(this::detectLeaks, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void detectLeaks() {
+        long now = System.nanoTime();
+        for (Lease lease : borrowed.values()) {
+            Throwable borrowedFrom = lease.borrowedFrom;
+            if (!lease.reported && borrowedFrom != null && now - lease.borrowedAt > leakThresholdNanos) {
+                lease.reported = true;
+                leaks.increment();
+                System.out.println("Possible connection leak, borrowed " + TimeUnit.NANOSECONDS.toMillis(now - lease.borrowedAt) + " ms ago");
+                borrowedFrom.printStackTrace(System.out);
+            }
+        }
+    }
+}
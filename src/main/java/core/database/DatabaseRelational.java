@@ -1,268 +1,751 @@
 package core.database;
 
-import core.Helper;
+import core.Server;
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 import javax.enterprise.inject.Alternative;
 
+/**
+ * Relational database, connections are taken from a pool shared by every
+ * instance and bound to the thread using them, so the repositories and the
+ * controller working on the same request share the connection and thus the
+ * transaction. The connection goes back to the pool when the request is over.
+ * Statements and results never outlive the call running them, so instances
+ * can be shared between threads. In single writer mode the pool only holds
+ * read only connections, transactions take turns on the connection of the
+ * writer and a write outside a transaction runs in one of its own. With read
+ * replicas configured queries go to the replicas, until the request writes
+ * or starts a transaction, the rest of it then reads from the primary so it
+ * sees its own writes
+ *
+ * @author Peibol
+ */
 @Alternative
 public abstract class DatabaseRelational extends Database {
 
-    protected static Connection conn = null;
-    protected PreparedStatement pstmt = null;
-    protected ResultSet rs = null;
-    protected int pointer = 0;
+    private static ConnectionPool pool = null;
+    private static final ThreadLocal<Connection> bound = new ThreadLocal<>();
+    private static SingleWriter writer = null;
+    private static final ThreadLocal<SingleWriter.Transaction> writing = new ThreadLocal<>();
+    private static ReplicaSet replicas = null;
+
+    private static final ThreadLocal<Boolean> pinned = new ThreadLocal<>();
+
+    /**
+     * Open a new physical connection, called by the pool
+     *
+     * @return
+     * @throws Exception
+     */
+    protected abstract Connection openConnection() throws Exception;
+
+    /**
+     * Open a new physical connection unable to write, for the pool of
+     * readers in single writer mode
+     *
+     * @return
+     * @throws Exception
+     */
+    protected Connection openReadOnlyConnection() throws Exception {
+        Connection conn = openConnection();
+        conn.setReadOnly(true);
+        return conn;
+    }
 
-    public abstract boolean connect();
+    /**
+     * Name of the SQL dialect, used to pick the migrations written for it
+     *
+     * @return
+     */
+    protected abstract String getDialect();
+
+    /**
+     * Prepare the database the first time it is connected to, runs on a
+     * connection bound to the calling thread. The schema is migrated to
+     * the latest version
+     *
+     * @return
+     * @throws Exception
+     */
+    protected boolean setUp() throws Exception {
+        return new SchemaMigrator(this, getDialect()).migrate();
+    }
 
-    public boolean dump(String dump) {
-        if (conn == null) {
-            return false;
-        }
+    protected int getMinPoolSize() {
+        return Integer.valueOf(Server.getConfig(Server.Config.DB_POOL_MIN_SIZE));
+    }
 
-        try {
-            startTransaction();
+    protected int getMaxPoolSize() {
+        return Integer.valueOf(Server.getConfig(Server.Config.DB_POOL_MAX_SIZE));
+    }
+
+    protected long getPoolTimeout() {
+        return Long.valueOf(Server.getConfig(Server.Config.DB_POOL_TIMEOUT));
+    }
+
+    protected long getPoolLeakThreshold() {
+        return Long.valueOf(Server.getConfig(Server.Config.DB_POOL_LEAK_THRESHOLD));
+    }
 
-            Statement stmt = conn.createStatement();
+    protected int getStatementCacheSize() {
+        return Integer.valueOf(Server.getConfig(Server.Config.DB_STATEMENT_CACHE_SIZE));
+    }
+
+    /**
+     * Whether every write goes through a single connection of its own, for
+     * engines allowing a single writer at a time
+     *
+     * @return
+     */
+    protected boolean isSingleWriter() {
+        return false;
+    }
+
+    protected int getWriterGroupSize() {
+        return 1;
+    }
+
+    /**
+     * Whether a backslash escapes the next character in SQL strings
+     *
+     * @return
+     */
+    protected boolean hasBackslashEscapes() {
+        return false;
+    }
 
-            // Get all the statements of the SQL dump line by line
-            List<String> list = Helper.list(dump, "([^;]+;)");
+    /**
+     * Open a new physical connection to a read replica
+     *
+     * @param endpoint
+     * @return
+     * @throws Exception
+     */
+    protected Connection openReplicaConnection(String endpoint) throws Exception {
+        throw new Exception("DatabaseRelational: Read replicas not supported by " + getDialect());
+    }
 
-            for (String sql : list) {
-                stmt.execute(sql);
+    /**
+     * Read replicas, a comma separated list whose entries are up to the engine
+     *
+     * @return
+     */
+    protected List<String> getReplicaEndpoints() {
+        List<String> endpoints = new ArrayList<>();
+        String list = Server.getConfig(Server.Config.DB_READ_REPLICAS);
+        if (list != null) {
+            for (String endpoint : list.split(",")) {
+                if (!endpoint.trim().isEmpty()) {
+                    endpoints.add(endpoint.trim());
+                }
             }
+        }
+        return endpoints;
+    }
 
-            commit();
-            return true;
-        } catch (SQLException e) {
-            rollback();
+    protected long getReplicaEjectionTime() {
+        return Long.valueOf(Server.getConfig(Server.Config.DB_REPLICA_EJECTION_TIME));
+    }
+
+    public boolean connect() {
+        synchronized (DatabaseRelational.class) {
+            if (pool != null) {
+                return true;
+            }
+
+            boolean singleWriter = isSingleWriter();
+
+            try {
+                pool = new ConnectionPool(
+                    singleWriter ? this::openReadOnlyConnection : this::openConnection,
+                    getMinPoolSize(),
+                    getMaxPoolSize(),
+                    getPoolTimeout(),
+                    getPoolLeakThreshold(),
+                    getStatementCacheSize()
+                );
+                if (singleWriter) {
+                    writer = new SingleWriter(openConnection(), getStatementCacheSize(), getWriterGroupSize());
+                }
+                List<String> endpoints = getReplicaEndpoints();
+                if (!endpoints.isEmpty()) {
+                    replicas = new ReplicaSet(
+                        endpoints,
+                        this::openReplicaConnection,
+                        getMaxPoolSize(),
+                        getPoolTimeout(),
+                        getPoolLeakThreshold(),
+                        getStatementCacheSize(),
+                        getReplicaEjectionTime()
+                    );
+                }
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+                disconnect();
+                return false;
+            }
+        }
+
+        try {
+            // The schema is read and migrated on the primary, replicas may lag behind
+            pin();
+            return setUp();
+        } catch (Exception e) {
             System.out.println(e.getMessage());
             return false;
+        } finally {
+            release();
         }
     }
 
-    public boolean prepare(String sql) {
+    /**
+     * Pool of connections, null until connected
+     *
+     * @return
+     */
+    public static ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Writer in single writer mode, null otherwise
+     *
+     * @return
+     */
+    public static SingleWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Read replicas, null when there are none
+     *
+     * @return
+     */
+    public static ReplicaSet getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Close every idle connection and forget the pools, the next connect
+     * starts from scratch. The connection bound to the current thread is
+     * given back first
+     */
+    public static void disconnect() {
+        release();
+        synchronized (DatabaseRelational.class) {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            if (replicas != null) {
+                replicas.close();
+                replicas = null;
+            }
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+        }
+    }
+
+    /**
+     * Give the connection bound to the current thread back to the pool, a
+     * transaction left open is rolled back first
+     */
+    public static void release() {
+        pinned.remove();
+        if (replicas != null) {
+            replicas.release();
+        }
+
+        SingleWriter.Transaction transaction = writing.get();
+        if (transaction != null) {
+            writing.remove();
+            writer.end(transaction, false);
+        }
+
+        Connection conn = bound.get();
         if (conn == null) {
-            return false;
+            return;
         }
 
+        bound.remove();
+        boolean broken = false;
         try {
-            pstmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-            pointer = 1;
-            rs = null;
-            return true;
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
-            return false;
+            broken = true;
         }
+        giveBack(conn, broken);
     }
 
-    public boolean add(String param) {
-        if (conn == null || pstmt == null) {
-            return false;
+    /**
+     * Give a connection back to the pool it was borrowed from, or close it
+     * if that pool has been closed since
+     *
+     * @param conn
+     * @param broken
+     */
+    private static void giveBack(Connection conn, boolean broken) {
+        ConnectionPool current = pool;
+        if (current != null && current.release(conn, broken)) {
+            return;
         }
-
         try {
-            pstmt.setString(pointer, param);
-            pointer++;
-            return true;
+            conn.close();
         } catch (SQLException e) {
             System.out.println(e.getMessage());
-            return false;
         }
     }
 
-    public boolean add(int param) {
-        if (conn == null || pstmt == null) {
-            return false;
+    /**
+     * Connection bound to the current thread, borrowed from the pool on
+     * first use, null when the pool can not provide one. The connection of
+     * the writer while the thread runs a write transaction
+     *
+     * @return
+     */
+    protected Connection connection() {
+        SingleWriter.Transaction transaction = writing.get();
+        if (transaction != null) {
+            return transaction.getConnection();
+        }
+
+        Connection conn = bound.get();
+        if (conn != null || pool == null) {
+            return conn;
         }
 
         try {
-            pstmt.setInt(pointer, param);
-            pointer++;
-            return true;
+            conn = pool.borrow();
+            bound.set(conn);
+            return conn;
         } catch (SQLException e) {
             System.out.println(e.getMessage());
-            return false;
+            return null;
         }
     }
 
-    public boolean startTransaction() {
+    /**
+     * Connection for a query, from a replica unless the request is pinned to
+     * the primary or no replica is available
+     *
+     * @return
+     */
+    private Connection readConnection() {
+        if (replicas != null && pinned.get() == null && writing.get() == null) {
+            Connection conn = replicas.connection();
+            if (conn != null) {
+                return conn;
+            }
+        }
+        return connection();
+    }
+
+    /**
+     * The request is about to write, from now on it reads from the primary
+     */
+    private void pin() {
+        if (replicas != null && pinned.get() == null) {
+            pinned.set(Boolean.TRUE);
+            replicas.release();
+        }
+    }
+
+    /**
+     * A connection level failure (SQL state class 08) means the connection
+     * is gone, drop it so the pool reconnects instead of handing it out again
+     *
+     * @param e
+     */
+    private void handle(Connection conn, SQLException e) {
+        System.out.println(e.getMessage());
+
+        if (replicas != null && replicas.fail(conn, e)) {
+            return;
+        }
+
+        // The connection of the writer is never replaced
+        String state = e.getSQLState();
+        if (writing.get() == null && conn == bound.get() && state != null && state.startsWith("08")) {
+            bound.remove();
+            giveBack(conn, true);
+        }
+    }
+
+    /**
+     * Run statements without results as JDBC batches, consecutive queries
+     * sharing their SQL go to the database in the same batch
+     *
+     * @param queries
+     * @return false if any of them failed
+     */
+    public boolean executeBatch(List<Query> queries) {
+        pin();
+        if (isWriteAlone()) {
+            return writeAlone(() -> executeBatch(queries), false);
+        }
+
+        Connection conn = connection();
         if (conn == null) {
             return false;
         }
 
         try {
-            conn.setAutoCommit(false);
+            int start = 0;
+            while (start < queries.size()) {
+                String sql = queries.get(start).getSql();
+                int end = start;
+
+                try (StatementCache.Statement stmt = prepare(conn, queries.get(start), false)) {
+                    PreparedStatement pstmt = stmt.get();
+                    try {
+                        while (end < queries.size() && queries.get(end).getSql().equals(sql)) {
+                            queries.get(end).bindTo(pstmt);
+                            pstmt.addBatch();
+                            end++;
+                        }
+                        pstmt.executeBatch();
+                    } catch (SQLException e) {
+                        // The statement goes back to the cache, do not leave the rest of the batch in it
+                        pstmt.clearBatch();
+                        throw e;
+                    }
+                }
+
+                start = end;
+            }
             return true;
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            handle(conn, e);
             return false;
         }
     }
 
-    public boolean rollback() {
+    /**
+     * Run the statements of a SQL script as it is read, in the transaction
+     * of the caller if there is one. Consecutive inserts into the same table
+     * are folded into inserts of many rows and sent in batches
+     *
+     * @param script
+     * @return false if the script could not be read or a statement failed
+     */
+    public boolean executeScript(Reader script) {
+        pin();
+        if (isWriteAlone()) {
+            return writeAlone(() -> executeScript(script), false);
+        }
+
+        Connection conn = connection();
         if (conn == null) {
             return false;
         }
 
-        try {
-            conn.rollback();
+        try (SqlScriptReader reader = new SqlScriptReader(script, hasBackslashEscapes()); Statement stmt = conn.createStatement()) {
+            ScriptRunner runner = new ScriptRunner(stmt, hasBackslashEscapes());
+            String sql;
+
+            while ((sql = reader.next()) != null) {
+                runner.run(sql);
+            }
+
+            runner.flush();
             return true;
         } catch (SQLException e) {
+            handle(conn, e);
+            return false;
+        } catch (IOException e) {
             System.out.println(e.getMessage());
             return false;
         }
     }
 
-    public boolean commit() {
+    /**
+     * Statement from the cache of the connection, only inserts ask for the
+     * generated keys
+     *
+     * @param conn
+     * @param query
+     * @param generatedKeys
+     * @return
+     * @throws SQLException
+     */
+    private StatementCache.Statement prepare(Connection conn, Query query, boolean generatedKeys) throws SQLException {
+        StatementCache statements = writing.get() != null ? writer.getStatementCache() : pool.getStatementCache(conn);
+        if (statements == null && replicas != null) {
+            statements = replicas.getStatementCache(conn);
+        }
+        return statements.prepare(query.getSql(), generatedKeys);
+    }
+
+    /**
+     * A write outside a transaction in single writer mode
+     *
+     * @return
+     */
+    private boolean isWriteAlone() {
+        return writer != null && writing.get() == null;
+    }
+
+    /**
+     * Run a single write in a transaction of its own
+     *
+     * @param write
+     * @param failed Result of the write when it fails
+     * @return
+     */
+    private <T> T writeAlone(Supplier<T> write, T failed) {
+        if (!startTransaction()) {
+            return failed;
+        }
+
+        T result = write.get();
+        if (Objects.equals(result, failed)) {
+            rollback();
+            return failed;
+        }
+
+        return commit() ? result : failed;
+    }
+
+    public boolean startTransaction() {
+        pin();
+        if (writer != null) {
+            if (writing.get() != null) {
+                return true;
+            }
+            try {
+                writing.set(writer.begin(getPoolTimeout()));
+                return true;
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+                return false;
+            }
+        }
+
+        Connection conn = connection();
         if (conn == null) {
             return false;
         }
 
         try {
-            conn.setAutoCommit(true);
+            conn.setAutoCommit(false);
             return true;
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            handle(conn, e);
             return false;
         }
     }
 
-    public boolean select() {
-        if (conn == null || pstmt == null) {
+    public boolean rollback() {
+        if (writer != null) {
+            return end(false);
+        }
+
+        Connection conn = connection();
+        if (conn == null) {
             return false;
         }
 
         try {
-            rs = pstmt.executeQuery();
+            conn.rollback();
             return true;
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            handle(conn, e);
             return false;
         }
     }
 
-    public boolean selectOne() {
-        if (conn == null || pstmt == null) {
+    public boolean commit() {
+        if (writer != null) {
+            return end(true);
+        }
+
+        Connection conn = connection();
+        if (conn == null) {
             return false;
         }
 
         try {
-            rs = pstmt.executeQuery();
-            return next();
+            conn.commit();
+            conn.setAutoCommit(true);
+            return true;
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            handle(conn, e);
             return false;
         }
     }
 
-    public Integer insert() {
-        if (conn == null || pstmt == null) {
-            return null;
+    /**
+     * Give the connection of the writer back, false if there was no
+     * transaction or its changes could not be committed
+     *
+     * @param commit
+     * @return
+     */
+    private boolean end(boolean commit) {
+        SingleWriter.Transaction transaction = writing.get();
+        if (transaction == null) {
+            return false;
         }
 
-        try {
-            pstmt.executeUpdate();
-            ResultSet rs = pstmt.getGeneratedKeys();
-
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
+        writing.remove();
+        return writer.end(transaction, commit);
+    }
 
+    /**
+     * Run a query and map every row, null if the query failed
+     *
+     * @param query
+     * @param mapper
+     * @return
+     */
+    public <T> List<T> select(Query query, RowMapper<T> mapper) {
+        Connection conn = readConnection();
+        if (conn == null) {
             return null;
+        }
+
+        try (StatementCache.Statement stmt = prepare(conn, query, false)) {
+            PreparedStatement pstmt = stmt.get();
+            query.bindTo(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                List<T> rows = new ArrayList<>();
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
+                return rows;
+            }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            handle(conn, e);
             return null;
         }
     }
 
-    public boolean update() {
-        if (conn == null || pstmt == null) {
+    /**
+     * Run a query and hand every row to the handler as it is read, without
+     * keeping the rows around
+     *
+     * @param query
+     * @param handler
+     * @return false if the query failed
+     */
+    public boolean selectEach(Query query, RowHandler handler) {
+        Connection conn = readConnection();
+        if (conn == null) {
             return false;
         }
 
-        try {
-            pstmt.executeUpdate();
-            return true;
+        try (StatementCache.Statement stmt = prepare(conn, query, false)) {
+            PreparedStatement pstmt = stmt.get();
+            query.bindTo(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+                return true;
+            }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            handle(conn, e);
             return false;
         }
     }
 
-    public boolean delete() {
-        if (conn == null || pstmt == null) {
-            return false;
+    /**
+     * Run a query and map its first row, null if there are no rows or the
+     * query failed
+     *
+     * @param query
+     * @param mapper
+     * @return
+     */
+    public <T> T selectOne(Query query, RowMapper<T> mapper) {
+        Connection conn = readConnection();
+        if (conn == null) {
+            return null;
         }
 
-        try {
-            pstmt.executeUpdate();
-            return true;
+        try (StatementCache.Statement stmt = prepare(conn, query, false)) {
+            PreparedStatement pstmt = stmt.get();
+            query.bindTo(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapper.map(rs) : null;
+            }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return false;
+            handle(conn, e);
+            return null;
         }
     }
 
-    public String getString(String paramName) {
-        try {
-            if (rs != null) {
-                return rs.getString(paramName);
-            }
-            return "";
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return "";
+    /**
+     * Run an insert, returns the generated key or null if it failed
+     *
+     * @param query
+     * @return
+     */
+    public Integer insert(Query query) {
+        pin();
+        if (isWriteAlone()) {
+            return writeAlone(() -> insert(query), null);
         }
-    }
 
-    public int getInt(String paramName) {
-        try {
-            if (rs != null) {
-                return rs.getInt(paramName);
+        Connection conn = connection();
+        if (conn == null) {
+            return null;
+        }
+
+        try (StatementCache.Statement stmt = prepare(conn, query, true)) {
+            PreparedStatement pstmt = stmt.get();
+            query.bindTo(pstmt);
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                return rs.next() ? rs.getInt(1) : null;
             }
-            return 0;
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return 0;
+            handle(conn, e);
+            return null;
         }
     }
 
-    public boolean next() {
-        try {
-            if (!rs.next()) {
-                rs = null;
-                return false;
-            }
-            return true;
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    /**
+     * Run an update, delete or any other statement without results
+     *
+     * @param query
+     * @return
+     */
+    public boolean execute(Query query) {
+        pin();
+        if (isWriteAlone()) {
+            return writeAlone(() -> execute(query), false);
+        }
+
+        Connection conn = connection();
+        if (conn == null) {
             return false;
         }
-    }
 
-    public int count() {
-        try {
-            int current = rs.getRow();
-            if (rs.last()) {
-                int rows = rs.getRow();
-                rs.absolute(current);
-                return rows;
-            }
-            return 0;
+        try (StatementCache.Statement stmt = prepare(conn, query, false)) {
+            PreparedStatement pstmt = stmt.get();
+            query.bindTo(pstmt);
+            pstmt.executeUpdate();
+            return true;
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return 0;
+            handle(conn, e);
+            return false;
         }
     }
-
-    public int pointer() {
-        return pointer;
-    }
 }
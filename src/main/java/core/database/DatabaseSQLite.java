@@ -2,33 +2,114 @@ package core.database;
 
 import core.Server;
 
-import java.io.File;
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.enterprise.inject.Alternative;
 
+/**
+ * SQLite database, every connection gets the pragmas set in the config
+ * right after being opened, an empty value leaves the SQLite default. SQLite
+ * allows a single writer at a time, in single writer mode writes are done by
+ * a connection of their own while pooled read only connections run the
+ * queries, which in WAL mode do not wait for the writer
+ *
+ * @author Peibol
+ */
 @Alternative
 public class DatabaseSQLite extends DatabaseRelational {
 
-    public boolean connect() {
-        if (conn != null) {
-            return true;
-        }
+    protected Connection openConnection() throws Exception {
+        return open(getUrl());
+    }
+
+    protected Connection openReadOnlyConnection() throws Exception {
+        return readOnly(open(getUrl()));
+    }
+
+    /**
+     * Replicas are given as database files, for trying replicas out locally
+     * with copies of the primary database
+     *
+     * @param endpoint
+     * @return
+     * @throws Exception
+     */
+    protected Connection openReplicaConnection(String endpoint) throws Exception {
+        return readOnly(open("jdbc:sqlite:" + endpoint));
+    }
+
+    private Connection open(String url) throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        Connection conn = DriverManager.getConnection(url);
 
-        try {
-            Class.forName("org.sqlite.JDBC");
-            String db = Server.getConfig(Server.Config.SQLITE_DB);
-            File f = new File(db);
-            boolean newDatabase = !f.exists();
-            conn = DriverManager.getConnection("jdbc:sqlite:" + db);
-            if (newDatabase) {
-                dump(loadResourceAsString("sql/dbdump.sql"));
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> pragma : getPragmas().entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
             }
-            return true;
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-            conn = null;
-            return false;
+        } catch (SQLException e) {
+            conn.close();
+            throw new SQLException("DatabaseSQLite: Unable to set pragmas, " + e.getMessage(), e);
+        }
+
+        return conn;
+    }
+
+    private Connection readOnly(Connection conn) throws SQLException {
+
+        // The driver only takes the read only flag before opening the file
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA query_only = 1");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+
+        return conn;
+    }
+
+    protected boolean isSingleWriter() {
+        return Boolean.valueOf(Server.getConfig(Server.Config.SQLITE_SINGLE_WRITER));
+    }
+
+    protected int getWriterGroupSize() {
+        return Integer.valueOf(Server.getConfig(Server.Config.SQLITE_WRITER_GROUP_SIZE));
+    }
+
+    protected String getUrl() {
+        return "jdbc:sqlite:" + Server.getConfig(Server.Config.SQLITE_DB);
+    }
+
+    /**
+     * Pragmas for new connections, in the order they are set. The journal
+     * mode goes first, it can not be changed once the connection has begun
+     * a transaction
+     *
+     * @return
+     */
+    protected Map<String, String> getPragmas() {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        addPragma(pragmas, "journal_mode", Server.Config.SQLITE_JOURNAL_MODE);
+        addPragma(pragmas, "synchronous", Server.Config.SQLITE_SYNCHRONOUS);
+        addPragma(pragmas, "mmap_size", Server.Config.SQLITE_MMAP_SIZE);
+        addPragma(pragmas, "cache_size", Server.Config.SQLITE_CACHE_SIZE);
+        addPragma(pragmas, "temp_store", Server.Config.SQLITE_TEMP_STORE);
+        addPragma(pragmas, "busy_timeout", Server.Config.SQLITE_BUSY_TIMEOUT);
+        return pragmas;
+    }
+
+    protected String getDialect() {
+        return "sqlite";
+    }
+
+    private static void addPragma(Map<String, String> pragmas, String name, Server.Config entry) {
+        String value = Server.getConfig(entry);
+        if (value != null && !value.trim().isEmpty()) {
+            pragmas.put(name, value.trim());
         }
     }
 }
@@ -1,26 +1,33 @@
 package core.database;
 
-import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.enterprise.inject.Alternative;
 
 @Alternative
 public class DatabaseSQLiteMemory extends DatabaseSQLite {
 
-    public boolean connect() {
-        if (conn != null) {
-            return true;
-        }
-
-        try {
-            Class.forName("org.sqlite.JDBC");
-            conn = DriverManager.getConnection("jdbc:sqlite::memory:");
-            dump(loadResourceAsString("sql/dbdump.sql"));
-            return true;
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-            conn = null;
-            return false;
-        }
+    protected String getUrl() {
+        return "jdbc:sqlite::memory:";
+    }
+
+    // Every connection to an in-memory database gets a database of its own,
+    // a single connection is opened up front and kept for good
+
+    protected int getMinPoolSize() {
+        return 1;
+    }
+
+    protected int getMaxPoolSize() {
+        return 1;
+    }
+
+    protected boolean isSingleWriter() {
+        return false;
+    }
+
+    protected List<String> getReplicaEndpoints() {
+        return new ArrayList<>();
     }
 }
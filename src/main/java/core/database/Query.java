@@ -0,0 +1,71 @@
+package core.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * SQL statement along with its parameters, immutable so it can be built once
+ * and shared between threads, binding a parameter returns a new query
+ *
+ * @author Peibol
+ */
+public final class Query {
+
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private final String sql;
+    private final Object[] params;
+
+    private Query(String sql, Object[] params) {
+        this.sql = sql;
+        this.params = params;
+    }
+
+    public static Query of(String sql, Object... params) {
+        return new Query(sql, params.length == 0 ? NO_PARAMS : params.clone());
+    }
+
+    /**
+     * Same statement with more parameters appended
+     *
+     * @param values
+     * @return
+     */
+    public Query bind(Object... values) {
+        Object[] bound = Arrays.copyOf(params, params.length + values.length);
+        System.arraycopy(values, 0, bound, params.length, values.length);
+        return new Query(sql, bound);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public int getParamCount() {
+        return params.length;
+    }
+
+    void bindTo(PreparedStatement pstmt) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            if (param == null) {
+                pstmt.setNull(i + 1, Types.NULL);
+            } else if (param instanceof Integer) {
+                pstmt.setInt(i + 1, (Integer) param);
+            } else if (param instanceof Long) {
+                pstmt.setLong(i + 1, (Long) param);
+            } else if (param instanceof String) {
+                pstmt.setString(i + 1, (String) param);
+            } else {
+                pstmt.setObject(i + 1, param);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + Arrays.toString(params);
+    }
+}
@@ -0,0 +1,227 @@
+package core.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read replicas of the database, each one with a pool of its own. Reads are
+ * spread over the replicas in turns, the connection taken is bound to the
+ * thread until the request is over. A replica unable to hand out a
+ * connection, or losing one, is ejected for a while and tried again after,
+ * the next replica in turn takes over and when none is left reads go back
+ * to the primary
+ *
+ * @author Peibol
+ */
+public class ReplicaSet {
+
+    /**
+     * Opens a new physical connection to the given replica
+     */
+    @FunctionalInterface
+    public interface Connector {
+        Connection open(String endpoint) throws Exception;
+    }
+
+    private static final class Replica {
+
+        private final String endpoint;
+        private final ConnectionPool pool;
+        private volatile boolean ejected = false;
+        private volatile long retryAt;
+
+        private Replica(String endpoint, ConnectionPool pool) {
+            this.endpoint = endpoint;
+            this.pool = pool;
+        }
+    }
+
+    private static final class Binding {
+
+        private final Replica replica;
+        private final Connection connection;
+
+        private Binding(Replica replica, Connection connection) {
+            this.replica = replica;
+            this.connection = connection;
+        }
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long ejectionNanos;
+    private final AtomicInteger turn = new AtomicInteger();
+    private final ThreadLocal<Binding> bound = new ThreadLocal<>();
+
+    private final LongAdder ejections = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * Replica pools open no connection up front, so replicas down at start
+     * up do not keep the server from starting
+     *
+     * @param endpoints
+     * @param connector
+     * @param maxSize Maximum number of open connections per replica
+     * @param timeoutMillis Maximum time to wait for a free connection
+     * @param leakThresholdMillis Time after which a borrowed connection is
+     *        reported as leaked, 0 disables leak detection
+     * @param statementCacheSize Prepared statements kept open per connection
+     * @param ejectionMillis Time an unhealthy replica is left out
+     * @throws SQLException
+     */
+    public ReplicaSet(List<String> endpoints, Connector connector, int maxSize, long timeoutMillis, long leakThresholdMillis, int statementCacheSize, long ejectionMillis) throws SQLException {
+
+        for (String endpoint : endpoints) {
+            ConnectionPool pool = new ConnectionPool(
+                () -> connector.open(endpoint), 0, maxSize, timeoutMillis, leakThresholdMillis, statementCacheSize
+            );
+            replicas.add(new Replica(endpoint, pool));
+        }
+
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+    }
+
+    /**
+     * Connection to a replica bound to the current thread, taken from the
+     * next healthy replica in turn on first use
+     *
+     * @return null if every replica is ejected or failing
+     */
+    public Connection connection() {
+
+        Binding binding = bound.get();
+        if (binding != null) {
+            return binding.connection;
+        }
+
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(turn.getAndIncrement(), replicas.size()));
+            if (replica.ejected && System.nanoTime() - replica.retryAt < 0) {
+                continue;
+            }
+
+            try {
+                Connection conn = replica.pool.borrow();
+                replica.ejected = false;
+                bound.set(new Binding(replica, conn));
+                return conn;
+            } catch (SQLException e) {
+                eject(replica, e);
+            }
+        }
+
+        fallbacks.increment();
+        return null;
+    }
+
+    /**
+     * Give the connection bound to the current thread back to its replica
+     */
+    public void release() {
+        Binding binding = bound.get();
+        if (binding != null) {
+            bound.remove();
+            binding.replica.pool.release(binding.connection, false);
+        }
+    }
+
+    /**
+     * A query failed on the connection, a connection level failure (SQL
+     * state class 08) drops the connection and ejects the replica
+     *
+     * @param conn
+     * @param e
+     * @return false if the connection is not bound to a replica
+     */
+    public boolean fail(Connection conn, SQLException e) {
+
+        Binding binding = bound.get();
+        if (binding == null || binding.connection != conn) {
+            return false;
+        }
+
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("08")) {
+            bound.remove();
+            binding.replica.pool.release(conn, true);
+            eject(binding.replica, e);
+        }
+        return true;
+    }
+
+    /**
+     * Prepared statements of the connection bound to the current thread
+     *
+     * @param conn
+     * @return null if the connection is not bound to a replica
+     */
+    public StatementCache getStatementCache(Connection conn) {
+        Binding binding = bound.get();
+        return binding != null && binding.connection == conn ? binding.replica.pool.getStatementCache(conn) : null;
+    }
+
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    public List<String> getEndpoints() {
+        List<String> endpoints = new ArrayList<>();
+        for (Replica replica : replicas) {
+            endpoints.add(replica.endpoint);
+        }
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Pool of the given replica, for its metrics
+     *
+     * @param endpoint
+     * @return null if there is no such replica
+     */
+    public ConnectionPool getPool(String endpoint) {
+        for (Replica replica : replicas) {
+            if (replica.endpoint.equals(endpoint)) {
+                return replica.pool;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEjected(String endpoint) {
+        for (Replica replica : replicas) {
+            if (replica.endpoint.equals(endpoint)) {
+                return replica.ejected;
+            }
+        }
+        return false;
+    }
+
+    public long getEjections() {
+        return ejections.sum();
+    }
+
+    /**
+     * Number of times no replica was available and the read went to the
+     * primary
+     *
+     * @return
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    private void eject(Replica replica, SQLException e) {
+        replica.retryAt = System.nanoTime() + ejectionNanos;
+        replica.ejected = true;
+        ejections.increment();
+        System.out.println("Replica " + replica.endpoint + " ejected for " + TimeUnit.NANOSECONDS.toMillis(ejectionNanos) + " ms: " + e.getMessage());
+    }
+}
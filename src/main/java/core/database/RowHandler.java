@@ -0,0 +1,15 @@
+package core.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a result set one by one, for callers that fold
+ * several rows into one object instead of mapping each row
+ *
+ * @author Peibol
+ */
+@FunctionalInterface
+public interface RowHandler {
+    void handle(ResultSet row) throws SQLException;
+}
@@ -0,0 +1,14 @@
+package core.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a result set into an object, called once per row
+ *
+ * @author Peibol
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet row) throws SQLException;
+}
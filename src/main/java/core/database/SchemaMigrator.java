@@ -0,0 +1,159 @@
+package core.database;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import core.ResourceLoader;
+
+/**
+ * Brings the schema of a relational database up to date. Migrations are SQL
+ * scripts under sql/migrations, applied in order and each one in a
+ * transaction along with its entry in the schema_version table. A dialect may
+ * override a script with its own version under sql/migrations/dialect.
+ * Databases created before the migrations existed, by the old dump, are taken
+ * as being at version 1
+ *
+ * @author Peibol
+ */
+public class SchemaMigrator extends ResourceLoader {
+
+    private static final String MIGRATIONS_PATH = "sql/migrations/";
+
+    // Version is the position in the list, new migrations go at the end
+    public static final String[] MIGRATIONS = {
+        "001_initial",
+        "002_keys_and_indexes"
+    };
+
+    private static final Query CREATE_SCHEMA_VERSION = Query.of(
+        "CREATE TABLE IF NOT EXISTS schema_version (version INTEGER NOT NULL PRIMARY KEY, description VARCHAR(255) NOT NULL, applied_on BIGINT NOT NULL)"
+    );
+    private static final Query SELECT_SCHEMA_VERSION = Query.of("SELECT MAX(version) FROM schema_version");
+    private static final Query INSERT_SCHEMA_VERSION = Query.of("INSERT INTO schema_version(version, description, applied_on) VALUES(?, ?, ?)");
+
+    private final DatabaseRelational db;
+    private final String dialect;
+
+    public SchemaMigrator(DatabaseRelational db, String dialect) {
+        this.db = db;
+        this.dialect = dialect;
+    }
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Apply every pending migration
+     *
+     * @return false if one of them failed, the ones before it stay applied
+     */
+    public boolean migrate() {
+        return migrate(getLatestVersion());
+    }
+
+    /**
+     * Apply the pending migrations up to the given version
+     *
+     * @param target
+     * @return
+     */
+    public boolean migrate(int target) {
+
+        try {
+            int version = getVersion();
+
+            for (int i = version; i < target && i < MIGRATIONS.length; i++) {
+                if (!apply(i + 1, MIGRATIONS[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Version of the schema, 0 for an empty database
+     *
+     * @return
+     * @throws Exception
+     */
+    public int getVersion() throws Exception {
+
+        boolean versioned = tableExists("schema_version");
+
+        if (!versioned && !db.execute(CREATE_SCHEMA_VERSION)) {
+            throw new Exception("SchemaMigrator: Unable to create the schema_version table");
+        }
+
+        if (!versioned && tableExists("users")) {
+            // Created by the dump the first migration comes from
+            if (!db.execute(INSERT_SCHEMA_VERSION.bind(1, MIGRATIONS[0], System.currentTimeMillis()))) {
+                throw new Exception("SchemaMigrator: Unable to record the existing schema");
+            }
+            System.out.println("Existing schema recorded as version 1");
+        }
+
+        Integer version = db.selectOne(SELECT_SCHEMA_VERSION, row -> row.getInt(1));
+        if (version == null) {
+            throw new Exception("SchemaMigrator: Unable to read the schema version");
+        }
+        return version;
+    }
+
+    private boolean apply(int version, String name) throws Exception {
+
+        InputStream script = loadResourceAsInputStream(MIGRATIONS_PATH + dialect + "/" + name + ".sql");
+        if (script == null) {
+            script = loadResourceAsInputStream(MIGRATIONS_PATH + name + ".sql");
+        }
+        if (script == null) {
+            throw new Exception("SchemaMigrator: Migration " + name + " not found");
+        }
+
+        // MySQL commits DDL statements on its own, so there a failed
+        // migration may be left half applied
+        try (Reader reader = new InputStreamReader(script, StandardCharsets.UTF_8)) {
+            if (!db.startTransaction()) {
+                return false;
+            }
+
+            if (!db.executeScript(reader)) {
+                System.out.println("Migration " + name + " failed");
+                db.rollback();
+                return false;
+            }
+        }
+
+        if (!db.execute(INSERT_SCHEMA_VERSION.bind(version, name, System.currentTimeMillis())) || !db.commit()) {
+            db.rollback();
+            return false;
+        }
+
+        System.out.println("Applied migration " + name);
+        return true;
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+
+        Connection conn = db.connection();
+        if (conn == null) {
+            throw new SQLException("SchemaMigrator: No connection available");
+        }
+
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getTables(conn.getCatalog(), null, table, new String[] { "TABLE" })) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package core.database;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the statements of a script on a connection. Consecutive inserts of
+ * plain rows into the same table and columns are folded into inserts of many
+ * rows, which SQLite and MySQL run much faster than one insert per row, and
+ * consecutive inserts into the same table go to the database in batches.
+ * Nothing is guaranteed to have run until the runner is flushed
+ *
+ * @author Peibol
+ */
+class ScriptRunner {
+
+    private static final Pattern INSERT = Pattern.compile(
+        "(INSERT\\s+INTO\\s+([^\\s(]+)\\s*(?:\\([^)]*\\))?\\s*VALUES)\\s*(\\(.*)",
+        Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+    );
+
+    static final int ROWS_PER_INSERT = 500;
+    static final int BATCH_SIZE = 100;
+
+    private final Statement stmt;
+    private final boolean backslashEscapes;
+
+    // Insert being folded
+    private final StringBuilder rows = new StringBuilder();
+    private String header = null;
+    private String headerTable = null;
+    private int rowCount = 0;
+
+    // Batch being built
+    private String batchTable = null;
+    private int batched = 0;
+
+    ScriptRunner(Statement stmt, boolean backslashEscapes) {
+        this.stmt = stmt;
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    void run(String sql) throws SQLException {
+
+        Matcher insert = INSERT.matcher(sql);
+        if (!insert.matches()) {
+            flush();
+            stmt.execute(sql);
+            return;
+        }
+
+        String table = insert.group(2);
+        String values = insert.group(3);
+
+        // Inserts with anything after their rows, like ON DUPLICATE KEY, are not folded
+        if (!isRowList(values)) {
+            foldRows();
+            batch(table, sql);
+            return;
+        }
+
+        if (rowCount > 0 && (rowCount == ROWS_PER_INSERT || !insert.group(1).equals(header))) {
+            foldRows();
+        }
+
+        if (rowCount == 0) {
+            header = insert.group(1);
+            headerTable = table;
+            rows.append(header).append(' ').append(values);
+        } else {
+            rows.append(',').append(values);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Run whatever is still folded or batched
+     *
+     * @throws SQLException
+     */
+    void flush() throws SQLException {
+        foldRows();
+        if (batched > 0) {
+            stmt.executeBatch();
+            batched = 0;
+        }
+    }
+
+    private void foldRows() throws SQLException {
+        if (rowCount > 0) {
+            batch(headerTable, rows.toString());
+            rows.setLength(0);
+            rowCount = 0;
+        }
+    }
+
+    private void batch(String table, String sql) throws SQLException {
+        if (batched > 0 && (batched == BATCH_SIZE || !table.equalsIgnoreCase(batchTable))) {
+            stmt.executeBatch();
+            batched = 0;
+        }
+        stmt.addBatch(sql);
+        batchTable = table;
+        batched++;
+    }
+
+    /**
+     * Whether the values are only parenthesized rows separated by commas
+     *
+     * @param values
+     * @return
+     */
+    private boolean isRowList(String values) {
+
+        int depth = 0;
+        char quote = 0;
+
+        for (int i = 0; i < values.length(); i++) {
+            char c = values.charAt(i);
+
+            if (quote != 0) {
+                if (c == '\\' && backslashEscapes && quote != '`') {
+                    i++;
+                } else if (c == quote) {
+                    // A doubled quote reopens the string right away
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && c != ',' && !Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+
+        return depth == 0 && quote == 0;
+    }
+}
@@ -0,0 +1,313 @@
+package core.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The only connection allowed to write, owned by a thread of its own. Write
+ * transactions queue up for it and get the connection one at a time, each
+ * one inside a savepoint of a database transaction opened by the writer
+ * thread. A transaction done with the connection passes it straight on to
+ * the next one in the queue, and once the queue is empty the writer thread
+ * commits them all at once, so a burst of writes costs a single commit. A
+ * transaction rolled back only rolls back to its savepoint, the rest of the
+ * group is not affected
+ *
+ * @author Peibol
+ */
+public class SingleWriter {
+
+    /**
+     * A write transaction, holding the connection from the moment it is
+     * handed over until it is committed or rolled back
+     */
+    public static final class Transaction {
+
+        private final CompletableFuture<Connection> granted = new CompletableFuture<>();
+        private final CompletableFuture<Boolean> durable = new CompletableFuture<>();
+        private Connection connection;
+
+        public Connection getConnection() {
+            return connection;
+        }
+    }
+
+    private final Connection connection;
+    private final StatementCache statements;
+    private final int maxGroupSize;
+    private final BlockingQueue<Transaction> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    // Only touched by whoever holds the connection
+    private final List<Transaction> group = new ArrayList<>();
+    private CompletableFuture<Void> groupEnded;
+
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    /**
+     * @param connection Connection used for every write, in auto commit mode
+     * @param statementCacheSize Prepared statements kept open, 0 disables the cache
+     * @param maxGroupSize Maximum number of transactions committed together
+     */
+    public SingleWriter(Connection connection, int statementCacheSize, int maxGroupSize) {
+
+        if (maxGroupSize < 1) {
+            throw new IllegalArgumentException("SingleWriter: Invalid group size " + maxGroupSize);
+        }
+
+        this.connection = connection;
+        this.statements = new StatementCache(connection, statementCacheSize, statementHits, statementMisses);
+        this.maxGroupSize = maxGroupSize;
+
+        thread = new Thread(this::run, "database-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue up for the connection and wait until it is handed over
+     *
+     * @param timeoutMillis
+     * @return
+     * @throws SQLException if the connection is not handed over in time
+     */
+    public Transaction begin(long timeoutMillis) throws SQLException {
+
+        if (closed) {
+            throw new SQLException("SingleWriter: Writer closed");
+        }
+
+        Transaction transaction = new Transaction();
+        queue.add(transaction);
+
+        try {
+            transaction.connection = transaction.granted.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return transaction;
+        } catch (TimeoutException | InterruptedException e) {
+            // Handed over in the meantime if it can no longer be cancelled
+            if (transaction.granted.cancel(false)) {
+                throw new SQLException("SingleWriter: Timed out waiting for the writer, " + queue.size() + " transactions queued");
+            }
+            transaction.connection = transaction.granted.join();
+            return transaction;
+        } catch (ExecutionException e) {
+            throw new SQLException("SingleWriter: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Give the connection up, a committed transaction waits until the
+     * commit of its group is done
+     *
+     * @param transaction
+     * @param commit
+     * @return false if the changes could not be committed
+     */
+    public boolean end(Transaction transaction, boolean commit) {
+
+        boolean released = release(commit);
+        if (released && commit) {
+            group.add(transaction);
+        }
+
+        Transaction next = group.size() < maxGroupSize ? queue.poll() : null;
+        if (!handOver(next)) {
+            groupEnded.complete(null);
+        }
+
+        if (!commit) {
+            return true;
+        }
+        if (!released) {
+            return false;
+        }
+
+        try {
+            return transaction.durable.get();
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stop the writer thread and close the connection, transactions still
+     * queued are never handed the connection
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        statements.close();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public StatementCache getStatementCache() {
+        return statements;
+    }
+
+    /**
+     * Number of database commits, each one covering a group of transactions
+     *
+     * @return
+     */
+    public long getGroups() {
+        return groups.sum();
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    public long getStatementHits() {
+        return statementHits.sum();
+    }
+
+    public long getStatementMisses() {
+        return statementMisses.sum();
+    }
+
+    private void run() {
+
+        while (!closed) {
+            Transaction first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                run("BEGIN IMMEDIATE");
+            } catch (SQLException e) {
+                first.granted.completeExceptionally(e);
+                continue;
+            }
+
+            group.clear();
+            CompletableFuture<Void> ended = new CompletableFuture<>();
+            groupEnded = ended;
+
+            // The last transaction of the group gives the connection back
+            if (handOver(first)) {
+                ended.join();
+            }
+
+            commit(group);
+        }
+    }
+
+    /**
+     * Hand the connection to the next transaction still waiting for it,
+     * starting by the given one
+     *
+     * @param next
+     * @return false if there was none
+     */
+    private boolean handOver(Transaction next) {
+
+        while (next != null) {
+            try {
+                run("SAVEPOINT write");
+                if (next.granted.complete(connection)) {
+                    return true;
+                }
+                // Gave up waiting before its turn came
+                run("RELEASE write");
+            } catch (SQLException e) {
+                next.granted.completeExceptionally(e);
+            }
+            next = queue.poll();
+        }
+
+        return false;
+    }
+
+    /**
+     * Close the savepoint of the transaction holding the connection
+     *
+     * @param commit Keep its changes or roll them back
+     * @return false if the changes could not be kept
+     */
+    private boolean release(boolean commit) {
+        try {
+            if (commit) {
+                run("RELEASE write");
+                return true;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+
+        try {
+            rollbacks.increment();
+            run("ROLLBACK TO write");
+            run("RELEASE write");
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    private void commit(List<Transaction> group) {
+
+        boolean done;
+        try {
+            run("COMMIT");
+            done = true;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            try {
+                run("ROLLBACK");
+            } catch (SQLException ex) {
+                System.out.println(ex.getMessage());
+            }
+            done = false;
+        }
+
+        groups.increment();
+        if (done) {
+            commits.add(group.size());
+        }
+        for (Transaction transaction : group) {
+            transaction.durable.complete(done);
+        }
+    }
+
+    private void run(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
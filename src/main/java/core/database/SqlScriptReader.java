@@ -0,0 +1,199 @@
+package core.database;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the statements of a SQL script one by one as the script is read, so
+ * scripts of any size can be run without holding them in memory. Semicolons
+ * within quoted strings, quoted identifiers and comments do not end a
+ * statement. Line comments and plain block comments are left out, block
+ * comments run by MySQL (starting with an exclamation mark) are kept. The
+ * lexical rules of MySQL, where a backslash escapes quotes in strings and a
+ * double dash needs a space after it to start a comment, can be turned on
+ *
+ * @author Peibol
+ */
+public class SqlScriptReader implements AutoCloseable {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final boolean backslashEscapes;
+    private final StringBuilder statement = new StringBuilder();
+    private final char[] buffer = new char[65536];
+    private int position = 0;
+    private int limit = 0;
+
+    // Characters read ahead and given back, the last one is read first
+    private final int[] pushedBack = new int[2];
+    private int pushed = 0;
+
+    /**
+     * @param reader
+     * @param backslashEscapes Whether a backslash escapes the next character
+     *        in strings and a line comment needs a space or control character
+     *        after its double dash, as in MySQL by default
+     */
+    public SqlScriptReader(Reader reader, boolean backslashEscapes) {
+        this.reader = reader;
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /**
+     * Next statement of the script, without its semicolon
+     *
+     * @return null at the end of the script
+     * @throws IOException if the script can not be read or ends within a
+     *         string or comment
+     */
+    public String next() throws IOException {
+
+        statement.setLength(0);
+        boolean content = false;
+        int c;
+
+        while ((c = read()) != EOF) {
+            switch (c) {
+                case ';':
+                    if (content) {
+                        return statement.toString().trim();
+                    }
+                    statement.setLength(0);
+                    continue;
+
+                case '\'':
+                case '"':
+                case '`':
+                    content = true;
+                    quoted(c);
+                    continue;
+
+                case '-':
+                    int dash = read();
+                    if (dash == '-') {
+                        int after = read();
+                        if (!backslashEscapes || after == EOF || Character.isWhitespace(after) || Character.isISOControl(after)) {
+                            if (after != '\n') {
+                                skipLine();
+                            }
+                            statement.append(' ');
+                            continue;
+                        }
+                        // Like 1--1 in MySQL, a subtraction
+                        unread(after);
+                    }
+                    unread(dash);
+                    break;
+
+                case '/':
+                    int star = read();
+                    if (star == '*') {
+                        content |= comment();
+                        continue;
+                    }
+                    unread(star);
+                    break;
+
+                default:
+                    break;
+            }
+
+            statement.append((char) c);
+            content |= !Character.isWhitespace(c);
+        }
+
+        // Last statement without a semicolon
+        return content ? statement.toString().trim() : null;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void quoted(int quote) throws IOException {
+
+        statement.append((char) quote);
+        int c;
+
+        while ((c = read()) != EOF) {
+            statement.append((char) c);
+
+            if (c == '\\' && backslashEscapes && quote != '`') {
+                int escaped = read();
+                if (escaped == EOF) {
+                    break;
+                }
+                statement.append((char) escaped);
+            } else if (c == quote) {
+                // A doubled quote stands for the quote itself
+                int next = read();
+                if (next != quote) {
+                    unread(next);
+                    return;
+                }
+                statement.append((char) next);
+            }
+        }
+
+        throw new IOException("SqlScriptReader: Unterminated " + (char) quote + " quote");
+    }
+
+    /**
+     * Block comment, kept if MySQL runs it
+     *
+     * @return whether it was kept
+     */
+    private boolean comment() throws IOException {
+
+        int c = read();
+        boolean keep = c == '!';
+        if (keep) {
+            statement.append("/*");
+        }
+
+        int previous = EOF;
+        while (c != EOF) {
+            if (keep) {
+                statement.append((char) c);
+            }
+            if (previous == '*' && c == '/') {
+                if (!keep) {
+                    statement.append(' ');
+                }
+                return keep;
+            }
+            previous = c;
+            c = read();
+        }
+
+        throw new IOException("SqlScriptReader: Unterminated comment");
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            // Skipped
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushed > 0) {
+            return pushedBack[--pushed];
+        }
+        if (position == limit) {
+            limit = Math.max(reader.read(buffer, 0, buffer.length), 0);
+            position = 0;
+            if (limit == 0) {
+                return EOF;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private void unread(int c) {
+        if (c != EOF) {
+            pushedBack[pushed++] = c;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package core.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements of one connection, keyed by their SQL and whether they
+ * return generated keys, the least recently used ones are closed once the
+ * cache is full. A connection is only used by one thread at a time, so the
+ * cache needs no locking. Statements are taken out while in use, a statement
+ * asked for again before being given back is prepared anew
+ *
+ * @author Peibol
+ */
+public class StatementCache {
+
+    private static final class Key {
+
+        private final String sql;
+        private final boolean generatedKeys;
+
+        private Key(String sql, boolean generatedKeys) {
+            this.sql = sql;
+            this.generatedKeys = generatedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return generatedKeys == key.generatedKeys && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return sql.hashCode() * 31 + (generatedKeys ? 1 : 0);
+        }
+    }
+
+    /**
+     * Statement checked out of the cache, closing it gives it back
+     */
+    public final class Statement implements AutoCloseable {
+
+        private final Key key;
+        private final PreparedStatement pstmt;
+
+        private Statement(Key key, PreparedStatement pstmt) {
+            this.key = key;
+            this.pstmt = pstmt;
+        }
+
+        public PreparedStatement get() {
+            return pstmt;
+        }
+
+        @Override
+        public void close() {
+            giveBack(this);
+        }
+    }
+
+    private final Connection connection;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<Key, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param connection
+     * @param capacity Maximum number of statements kept open, 0 disables the cache
+     * @param hits Counter shared by the caches of the pool
+     * @param misses Counter shared by the caches of the pool
+     */
+    public StatementCache(Connection connection, int capacity, LongAdder hits, LongAdder misses) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Take the statement from the cache or prepare it if it is not there
+     *
+     * @param sql
+     * @param generatedKeys Whether the statement returns generated keys
+     * @return
+     * @throws SQLException
+     */
+    public Statement prepare(String sql, boolean generatedKeys) throws SQLException {
+
+        Key key = new Key(sql, generatedKeys);
+        PreparedStatement pstmt = statements.remove(key);
+
+        if (pstmt != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            pstmt = generatedKeys
+                ? connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
+        }
+
+        return new Statement(key, pstmt);
+    }
+
+    public int getSize() {
+        return statements.size();
+    }
+
+    /**
+     * Close every cached statement
+     */
+    public void close() {
+        for (PreparedStatement pstmt : statements.values()) {
+            close(pstmt);
+        }
+        statements.clear();
+    }
+
+    private void giveBack(Statement statement) {
+
+        PreparedStatement pstmt = statement.pstmt;
+
+        if (capacity <= 0) {
+            close(pstmt);
+            return;
+        }
+
+        try {
+            // Do not hold on to the values of the last run
+            pstmt.clearParameters();
+        } catch (SQLException e) {
+            close(pstmt);
+            return;
+        }
+
+        PreparedStatement previous = statements.put(statement.key, pstmt);
+        if (previous != null) {
+            close(previous);
+        }
+
+        Iterator<PreparedStatement> it = statements.values().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            close(it.next());
+            it.remove();
+        }
+    }
+
+    private static void close(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
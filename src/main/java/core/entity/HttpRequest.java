@@ -1,5 +1,7 @@
 package core.entity;
 
+import java.nio.charset.StandardCharsets;
+
 import com.sun.net.httpserver.Headers;
 
 public class HttpRequest extends DataContainer {
@@ -7,13 +9,14 @@ public class HttpRequest extends DataContainer {
     private String url;
     private String method;
     private Headers headers;
+    private byte[] rawBody;
     private String body;
 
-    public HttpRequest(String url, String method, Headers headers, String body) {
+    public HttpRequest(String url, String method, Headers headers, byte[] rawBody) {
         this.url = url;
         this.method = method;
         this.headers = headers;
-        this.body = body;
+        this.rawBody = rawBody;
     }
 
     public String getURL() {
@@ -28,7 +31,24 @@ public class HttpRequest extends DataContainer {
         return headers;
     }
 
+    /**
+     * Body decoded as UTF-8 text
+     *
+     * @return
+     */
     public String getBody() {
+        if (body == null) {
+            body = new String(rawBody, StandardCharsets.UTF_8);
+        }
         return body;
     }
+
+    /**
+     * Body as received, for binary content types
+     *
+     * @return
+     */
+    public byte[] getRawBody() {
+        return rawBody;
+    }
 }
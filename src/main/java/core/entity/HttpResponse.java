@@ -1,13 +1,28 @@
 package core.entity;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 public class HttpResponse {
 
+    /**
+     * Writes the body straight into the response stream, for bodies sent
+     * while they are being generated
+     */
+    public interface BodyWriter {
+        void write(OutputStream stream) throws IOException;
+    }
+
     private int code;
     private Map<String, String> headers;
     private String body;
+    private byte[] encodedBody = null;
+    private BodyWriter bodyWriter = null;
 
     public HttpResponse(int code) {
         this.code = code;
@@ -21,14 +36,55 @@ public class HttpResponse {
         headers = new HashMap<>();
     }
 
+    public HttpResponse(int code, byte[] encodedBody) {
+        this.code = code;
+        this.encodedBody = encodedBody;
+        headers = new HashMap<>();
+    }
+
+    public HttpResponse(int code, BodyWriter bodyWriter) {
+        this.code = code;
+        this.bodyWriter = bodyWriter;
+        headers = new HashMap<>();
+    }
+
     public int getCode() {
         return code;
     }
 
     public String getBody() {
+        if (body == null) {
+            getEncodedBody();
+            body = new String(encodedBody, StandardCharsets.UTF_8);
+        }
         return body;
     }
 
+    public byte[] getEncodedBody() {
+        if (encodedBody == null && bodyWriter != null) {
+            try {
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                bodyWriter.write(stream);
+                encodedBody = stream.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (encodedBody == null) {
+            encodedBody = body.getBytes(StandardCharsets.UTF_8);
+        }
+        return encodedBody;
+    }
+
+    /**
+     * Writer of a body which is not buffered, null otherwise
+     *
+     * @return
+     */
+    public BodyWriter getBodyWriter() {
+        return bodyWriter;
+    }
+
     public String getHeader(String header) {
         return headers.get(header);
     }
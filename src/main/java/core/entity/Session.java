@@ -1,43 +1,206 @@
 package core.entity;
 
-import java.util.Calendar;
-import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
-public class Session extends DataContainer {
+import domain.contract.entity.RoleObject;
+
+/**
+ * Session of a logged user, kept as primitive fields so that looking it up
+ * and checking its expiry does not allocate
+ */
+public class Session {
 
     private static final int SESSION_LENGTH_MINUTES = 5;
+    private static final long SESSION_LENGTH_NANOS = TimeUnit.MINUTES.toNanos(SESSION_LENGTH_MINUTES);
+
+    // The token is 128 bits, rendered as 32 hex characters in the cookie
+    private static final int TOKEN_HALF_LENGTH = 16;
+    private static final int TOKEN_LENGTH = TOKEN_HALF_LENGTH * 2;
+
+    private final int uid;
+    private final long tokenHigh;
+    private final long tokenLow;
+    private volatile long touched;
+    private volatile boolean invalidated = false;
 
-    private int uid;
-    private Date touched;
-    private String sessionToken;
+    // User profile cached at login, valid while the user version does not change
+    private volatile Profile profile = null;
+
+    private static final class Profile {
+        private final long version;
+        private final String username;
+        private final RoleObject[] roles;
+
+        private Profile(long version, String username, RoleObject[] roles) {
+            this.version = version;
+            this.username = username;
+            this.roles = roles;
+        }
+    }
 
-    public Session(int uid, String sessionToken) {
-        super();
+    public Session(int uid, long tokenHigh, long tokenLow) {
         this.uid = uid;
-        this.sessionToken = sessionToken;
+        this.tokenHigh = tokenHigh;
+        this.tokenLow = tokenLow;
         touch();
     }
 
+    /**
+     * Restore a session whose expiry time, as epoch milliseconds, is known
+     *
+     * @param uid
+     * @param tokenHigh
+     * @param tokenLow
+     * @param expiryTime
+     */
+    public Session(int uid, long tokenHigh, long tokenLow, long expiryTime) {
+        this.uid = uid;
+        this.tokenHigh = tokenHigh;
+        this.tokenLow = tokenLow;
+        long remaining = TimeUnit.MILLISECONDS.toNanos(expiryTime - System.currentTimeMillis());
+        touched = System.nanoTime() - (SESSION_LENGTH_NANOS - remaining);
+    }
+
     public int getUserId() {
         return uid;
     }
 
+    public long getTokenHigh() {
+        return tokenHigh;
+    }
+
+    public long getTokenLow() {
+        return tokenLow;
+    }
+
+    public boolean hasToken(long high, long low) {
+        return tokenHigh == high && tokenLow == low;
+    }
+
+    /**
+     * Token as sent in the session cookie
+     *
+     * @return
+     */
     public String getSessionToken() {
-        return sessionToken;
+        char[] token = new char[TOKEN_LENGTH];
+        writeHex(tokenHigh, token, 0);
+        writeHex(tokenLow, token, TOKEN_HALF_LENGTH);
+        return new String(token);
+    }
+
+    /**
+     * Monotonic timestamp, in nanoseconds, of the last user action
+     *
+     * @return
+     */
+    public long getTouched() {
+        return touched;
     }
 
     public void touch() {
-        touched = new Date();
+        touched = System.nanoTime();
     }
 
-    public Date getExpiryTime() {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(touched);
-        calendar.add(Calendar.MINUTE, SESSION_LENGTH_MINUTES);
-        return calendar.getTime();
+    /**
+     * Wall clock time, as epoch milliseconds, at which the session expires
+     *
+     * @return
+     */
+    public long getExpiryTime() {
+        long remaining = SESSION_LENGTH_NANOS - (System.nanoTime() - touched);
+        return System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(remaining);
     }
 
     public boolean isExpired() {
-        return getExpiryTime().before(new Date());
+        return System.nanoTime() - touched > SESSION_LENGTH_NANOS;
+    }
+
+    /**
+     * Mark the session as terminated, its cookie will be cleared
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    public boolean isInvalidated() {
+        return invalidated;
+    }
+
+    /**
+     * Cache the name and roles of the user, tagged with the version of the
+     * user they were read at
+     *
+     * @param version
+     * @param username
+     * @param roles
+     */
+    public void setProfile(long version, String username, RoleObject[] roles) {
+        profile = new Profile(version, username, roles);
+    }
+
+    /**
+     * Whether the cached profile was read at the given user version
+     *
+     * @param version
+     * @return
+     */
+    public boolean hasProfile(long version) {
+        Profile current = profile;
+        return current != null && current.version == version;
+    }
+
+    public String getUsername() {
+        Profile current = profile;
+        return current != null ? current.username : null;
+    }
+
+    public RoleObject[] getRoles() {
+        Profile current = profile;
+        return current != null ? current.roles : null;
+    }
+
+    /**
+     * Whether the string has the shape of a session token, must be checked
+     * before parsing its halves
+     *
+     * @param token
+     * @return
+     */
+    public static boolean isWellFormedToken(String token) {
+        if (token == null || token.length() != TOKEN_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < TOKEN_LENGTH; i++) {
+            if (Character.digit(token.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public static long parseTokenHigh(String token) {
+        return parseHex(token, 0);
+    }
+
+    public static long parseTokenLow(String token) {
+        return parseHex(token, TOKEN_HALF_LENGTH);
+    }
+
+    private static long parseHex(String token, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + TOKEN_HALF_LENGTH; i++) {
+            value = (value << 4) | Character.digit(token.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static void writeHex(long value, char[] buffer, int offset) {
+        for (int i = offset + TOKEN_HALF_LENGTH - 1; i >= offset; i--) {
+            buffer[i] = Character.forDigit((int) (value & 0xF), 16);
+            value >>>= 4;
+        }
     }
 }
@@ -8,7 +8,7 @@ import core.entity.HttpRequest;
 public class RequestFactory {
 
     public static HttpRequest create(HttpExchange exchange) {
-        String body = Helper.convertInputStreamToString(exchange.getRequestBody());
+        byte[] body = Helper.convertInputStreamToBytes(exchange.getRequestBody());
         String requestedURL = "http://" + exchange.getRequestHeaders().getFirst("Host") + exchange.getRequestURI();
         return new HttpRequest(
                 requestedURL, 
@@ -1,27 +1,45 @@
 package core.entity.factory;
 
-import java.util.Random;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 
-import core.Server;
 import core.entity.Session;
 
 public class SessionFactory {
 
+    private static final int SEED_LENGTH = 32;
+
+    // Only used to seed the per thread generators, reads the non blocking system source
+    private static final SecureRandom seeder = new SecureRandom();
+
+    // One generator per thread, concurrent logins never contend on the same instance
+    private static final ThreadLocal<SecureRandom> generator = ThreadLocal.withInitial(SessionFactory::createGenerator);
+
     /**
-     * Create a new session with respective token, ensure that token is not repeated
+     * Create a new session with a random 128 bits token, uniqueness among the
+     * live sessions is enforced when the session is stored
      * 
      * @param uid
      * @return
      */
     public static Session create(int uid) {
 
-        String sessionToken;
+        SecureRandom random = generator.get();
+        return new Session(uid, random.nextLong(), random.nextLong());
+    }
 
-        do {
-            Random rand = new Random(System.currentTimeMillis());
-            sessionToken = Long.toHexString(rand.nextLong());
-        } while (Server.getSession(sessionToken) != null);
+    private static SecureRandom createGenerator() {
 
-        return new Session(uid, sessionToken);
+        try {
+            // SHA1PRNG keeps its state per instance, unlike NativePRNG which
+            // funnels every instance through one shared lock
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            byte[] seed = new byte[SEED_LENGTH];
+            seeder.nextBytes(seed);
+            random.setSeed(seed);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
     }
 }
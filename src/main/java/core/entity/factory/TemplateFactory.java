@@ -1,17 +1,41 @@
 package core.entity.factory;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import core.Server;
 import core.templating.TemplateEngine;
+import core.templating.TemplateParserCompiled;
 import core.templating.TemplateParserDefault;
 import core.templating.TemplateParserTwig;
 
 public class TemplateFactory {
 
+    // Engines are thread safe, a single instance per type is shared by all requests
+    private static final Map<TemplateEngine.Type, TemplateEngine> engines = new ConcurrentHashMap<>();
+
     public static TemplateEngine getTemplateParser() throws Exception {
 
-        switch (Server.getTemplateEngineType()) {
+        TemplateEngine.Type type = Server.getTemplateEngineType();
+        TemplateEngine engine = engines.get(type);
+
+        if (engine == null) {
+            engine = createTemplateParser(type);
+            TemplateEngine previous = engines.putIfAbsent(type, engine);
+            if (previous != null) {
+                engine = previous;
+            }
+        }
+
+        return engine;
+    }
+
+    private static TemplateEngine createTemplateParser(TemplateEngine.Type type) throws Exception {
+
+        switch (type) {
             case DEFAULT: return new TemplateParserDefault();
             case TWIG: return new TemplateParserTwig();
+            case COMPILED: return new TemplateParserCompiled();
             default:
                 throw new Exception("TemplateFactory: Specified templating engine is not available");
         }
@@ -0,0 +1,238 @@
+package core.session;
+
+import java.util.concurrent.locks.StampedLock;
+
+import core.entity.Session;
+
+/**
+ * Open addressing hash map of sessions keyed by the high half of their token,
+ * the low half is compared on lookup. Lookups take a read stamp and do not
+ * allocate, writes are serialized.
+ *
+ * @author Peibol
+ */
+public class SessionMap {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+    private Session[] values;
+    private int mask;
+    private int size = 0;
+
+    public SessionMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Find the session holding the given token
+     *
+     * @param high
+     * @param low
+     * @return
+     */
+    public Session get(long high, long low) {
+
+        long stamp = lock.readLock();
+        try {
+            for (int i = slot(high); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == high && values[i].getTokenLow() == low) {
+                    return values[i];
+                }
+            }
+            return null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Store the session unless its token is already taken
+     *
+     * @param session
+     * @return false if another session holds the same token
+     */
+    public boolean putIfAbsent(Session session) {
+
+        long high = session.getTokenHigh();
+        long stamp = lock.writeLock();
+        try {
+            int i = slot(high);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (values[i].hasToken(high, session.getTokenLow())) {
+                    return false;
+                }
+            }
+
+            keys[i] = high;
+            values[i] = session;
+
+            // Keep the load factor at one half, probe chains stay short
+            if (++size > (mask + 1) / 2) {
+                resize();
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the session, if present
+     *
+     * @param session
+     * @return
+     */
+    public boolean remove(Session session) {
+
+        long high = session.getTokenHigh();
+        long stamp = lock.writeLock();
+        try {
+            for (int i = slot(high); values[i] != null; i = (i + 1) & mask) {
+                if (values[i].hasToken(high, session.getTokenLow())) {
+                    delete(i);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Grow the table ahead of a bulk insert so it is not rehashed repeatedly
+     *
+     * @param expectedSize
+     */
+    public void ensureCapacity(int expectedSize) {
+
+        long stamp = lock.writeLock();
+        try {
+            while ((mask + 1) / 2 < expectedSize) {
+                resize();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copy of all the stored sessions
+     *
+     * @return
+     */
+    public Session[] values() {
+
+        long stamp = lock.readLock();
+        try {
+            Session[] copy = new Session[size];
+            int n = 0;
+            for (Session session : values) {
+                if (session != null) {
+                    copy[n++] = session;
+                }
+            }
+            return copy;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Remove all the sessions that expired
+     *
+     * @return number of sessions removed
+     */
+    public int removeExpired() {
+
+        long stamp = lock.writeLock();
+        try {
+            int removed = 0;
+            for (int i = 0; i < values.length; i++) {
+                // Deleting shifts the next entry of the chain into this slot, check it again
+                while (values[i] != null && values[i].isExpired()) {
+                    values[i].invalidate();
+                    delete(i);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Backward shift deletion, entries further down the probe chain are moved
+     * into the gap so lookups never need tombstones
+     *
+     * @param gap
+     */
+    private void delete(int gap) {
+
+        size--;
+        int i = gap;
+
+        while (true) {
+            i = (i + 1) & mask;
+
+            if (values[i] == null) {
+                break;
+            }
+
+            int home = slot(keys[i]);
+
+            // Move the entry back only if its home slot is not between the gap and its position
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void resize() {
+
+        long[] oldKeys = keys;
+        Session[] oldValues = values;
+
+        allocate(oldKeys.length * 2);
+
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Session[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
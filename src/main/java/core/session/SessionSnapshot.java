@@ -0,0 +1,146 @@
+package core.session;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+
+import core.entity.Session;
+
+/**
+ * Binary snapshot of the in-memory sessions, written and read through memory
+ * mapped files so that a million sessions load in a few milliseconds.
+ *
+ * Layout is a header (magic, version, record count) followed by fixed size
+ * records: token high, token low, uid and expiry time as epoch milliseconds.
+ *
+ * @author Peibol
+ */
+public class SessionSnapshot {
+
+    private static final int MAGIC = 0x53455353; // "SESS"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = Integer.BYTES * 3;
+    private static final int RECORD_LENGTH = Long.BYTES * 3 + Integer.BYTES;
+
+    private static final Set<StandardOpenOption> WRITE_OPTIONS = EnumSet.of(
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE
+    );
+
+    /**
+     * Write all live sessions to a temporary file and move it over the
+     * snapshot, a crash while writing never leaves a truncated snapshot. The
+     * snapshot holds live session tokens, so only its owner can read it
+     *
+     * @param sessions
+     * @param path
+     * @return number of sessions written
+     * @throws IOException
+     */
+    public static int write(SessionMap sessions, Path path) throws IOException {
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Session[] live = sessions.values();
+        int count = 0;
+
+        // Left behind by a crash, created again so it gets the permissions below
+        Files.deleteIfExists(temp);
+
+        try (FileChannel channel = FileChannel.open(temp, WRITE_OPTIONS, ownerOnly(path))) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_LENGTH + (long) live.length * RECORD_LENGTH);
+
+            buffer.position(HEADER_LENGTH);
+
+            for (Session session : live) {
+                if (!session.isExpired()) {
+                    buffer.putLong(session.getTokenHigh());
+                    buffer.putLong(session.getTokenLow());
+                    buffer.putInt(session.getUserId());
+                    buffer.putLong(session.getExpiryTime());
+                    count++;
+                }
+            }
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(Integer.BYTES, VERSION);
+            buffer.putInt(Integer.BYTES * 2, count);
+            buffer.force();
+
+            // Expired sessions were skipped, drop the unused tail
+            channel.truncate(HEADER_LENGTH + (long) count * RECORD_LENGTH);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private static FileAttribute<?>[] ownerOnly(Path path) {
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")) };
+    }
+
+    /**
+     * Load the sessions of the snapshot that did not expire in the meantime
+     *
+     * @param path
+     * @param sessions
+     * @return number of sessions restored
+     * @throws IOException
+     */
+    public static int read(Path path, SessionMap sessions) throws IOException {
+
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+
+            if (size < HEADER_LENGTH) {
+                throw new IOException("Session snapshot is truncated");
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Session snapshot has an unknown format");
+            }
+
+            int count = buffer.getInt();
+
+            if (size != HEADER_LENGTH + (long) count * RECORD_LENGTH) {
+                throw new IOException("Session snapshot is truncated");
+            }
+
+            long now = System.currentTimeMillis();
+            int restored = 0;
+
+            sessions.ensureCapacity(sessions.size() + count);
+
+            for (int i = 0; i < count; i++) {
+                long tokenHigh = buffer.getLong();
+                long tokenLow = buffer.getLong();
+                int uid = buffer.getInt();
+                long expiryTime = buffer.getLong();
+
+                if (expiryTime > now && sessions.putIfAbsent(new Session(uid, tokenHigh, tokenLow, expiryTime))) {
+                    restored++;
+                }
+            }
+
+            return restored;
+        }
+    }
+}
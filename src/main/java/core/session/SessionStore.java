@@ -0,0 +1,23 @@
+package core.session;
+
+import core.entity.Session;
+
+/**
+ * Keeps track of user sessions and translates them from and to the session
+ * cookie value
+ *
+ * @author Peibol
+ */
+public abstract class SessionStore {
+
+    public enum Type{
+        MEMORY,
+        SIGNED,
+        UNKNOWN
+    }
+
+    public abstract Session create(int uid);
+    public abstract Session retrieve(String cookieValue);
+    public abstract void remove(Session session);
+    public abstract String getCookieValue(Session session);
+}
@@ -0,0 +1,125 @@
+package core.session;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import core.entity.Session;
+import core.entity.factory.SessionFactory;
+
+/**
+ * Sessions live in the memory of this process, the cookie only carries the
+ * session token
+ *
+ * @author Peibol
+ */
+public class SessionStoreMemory extends SessionStore {
+
+    private final SessionMap sessions = new SessionMap();
+    private Path snapshot = null;
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * Periodically drop expired sessions and, if a snapshot file is given,
+     * checkpoint the sessions to it. Sessions of a previous snapshot are
+     * restored first, so a restart does not log everybody out. A snapshot
+     * which can not be read is moved aside and the store starts empty
+     *
+     * @param snapshotFile may be empty to disable snapshots
+     * @param intervalSeconds
+     */
+    public void startHousekeeping(String snapshotFile, long intervalSeconds) {
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-housekeeping");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (snapshotFile != null && !snapshotFile.trim().isEmpty()) {
+            snapshot = Paths.get(snapshotFile.trim());
+            restore();
+
+            // Last checkpoint on a clean shutdown
+            Runtime.getRuntime().addShutdownHook(new Thread(this::stopHousekeeping));
+        }
+
+        scheduler.scheduleWithFixedDelay(this::checkpoint, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void restore() {
+        try {
+            int restored = SessionSnapshot.read(snapshot, sessions);
+            System.out.println("Restored " + restored + " sessions from " + snapshot);
+        } catch (IOException e) {
+            // Nothing is restored from a snapshot failing its checks
+            System.out.println(e.getMessage());
+
+            Path aside = snapshot.resolveSibling(snapshot.getFileName() + ".corrupt");
+            try {
+                Files.move(snapshot, aside, StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Session snapshot moved to " + aside + ", starting with no sessions");
+            } catch (IOException ex) {
+                System.out.println(ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Wait for a checkpoint in progress, if any, and write the last one
+     */
+    private void stopHousekeeping() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+    }
+
+    private synchronized void checkpoint() {
+        try {
+            sessions.removeExpired();
+
+            if (snapshot != null) {
+                SessionSnapshot.write(sessions, snapshot);
+            }
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public Session create(int uid) {
+        Session session = SessionFactory.create(uid);
+
+        // Two live sessions sharing 128 random bits is practically impossible,
+        // the atomic insert still guarantees a token is never handed out twice
+        if (!sessions.putIfAbsent(session)) {
+            throw new IllegalStateException("SessionStoreMemory: Session token already in use");
+        }
+
+        return session;
+    }
+
+    public Session retrieve(String cookieValue) {
+        if (!Session.isWellFormedToken(cookieValue)) {
+            return null;
+        }
+        return sessions.get(Session.parseTokenHigh(cookieValue), Session.parseTokenLow(cookieValue));
+    }
+
+    public void remove(Session session) {
+        sessions.remove(session);
+        session.invalidate();
+    }
+
+    public String getCookieValue(Session session) {
+        return session.getSessionToken();
+    }
+}
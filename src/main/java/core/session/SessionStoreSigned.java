@@ -0,0 +1,133 @@
+package core.session;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import core.entity.Session;
+
+/**
+ * Stateless sessions, the cookie carries the user id and the expiry time
+ * signed with HMAC-SHA256, so any node sharing the keys can validate it.
+ *
+ * Keys are given as "id:secret" pairs separated by commas. The first key
+ * signs new cookies, all of them are accepted, which allows rotating keys
+ * by prepending the new one and dropping the old one once its cookies
+ * expired. Cookie format is "id.payload.signature" in base64url.
+ *
+ * @author Peibol
+ */
+public class SessionStoreSigned extends SessionStore {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int PAYLOAD_LENGTH = Integer.BYTES + Long.BYTES;
+
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    private final String signingKeyId;
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+
+    // Mac instances are not thread safe, each thread keeps its own per key
+    private final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(LinkedHashMap::new);
+
+    public SessionStoreSigned(String keyList) throws Exception {
+
+        if (keyList == null || keyList.trim().isEmpty()) {
+            throw new Exception("SessionStoreSigned: no signing keys configured");
+        }
+
+        for (String entry : keyList.split(",")) {
+            String[] pair = entry.trim().split(":", 2);
+
+            if (pair.length != 2 || pair[0].isEmpty() || pair[1].isEmpty() || pair[0].contains(".")) {
+                throw new Exception("SessionStoreSigned: keys must be given as id:secret");
+            }
+
+            keys.put(pair[0], new SecretKeySpec(pair[1].getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        }
+
+        signingKeyId = keys.keySet().iterator().next();
+    }
+
+    public Session create(int uid) {
+        return new Session(uid, 0, 0);
+    }
+
+    public Session retrieve(String cookieValue) {
+
+        if (cookieValue == null) {
+            return null;
+        }
+
+        String[] parts = cookieValue.split("\\.");
+
+        if (parts.length != 3 || !keys.containsKey(parts[0])) {
+            return null;
+        }
+
+        try {
+            byte[] payload = decoder.decode(parts[1]);
+            byte[] signature = decoder.decode(parts[2]);
+
+            if (payload.length != PAYLOAD_LENGTH ||
+                !MessageDigest.isEqual(signature, sign(parts[0], payload))) {
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            int uid = buffer.getInt();
+            long expiryTime = buffer.getLong();
+
+            if (expiryTime <= System.currentTimeMillis()) {
+                return null;
+            }
+
+            return new Session(uid, 0, 0, expiryTime);
+        }
+        catch (IllegalArgumentException | GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    public void remove(Session session) {
+        // Nothing is kept on the server, the cookie is cleared on the client
+        session.invalidate();
+    }
+
+    public String getCookieValue(Session session) {
+
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_LENGTH)
+            .putInt(session.getUserId())
+            .putLong(session.getExpiryTime())
+            .array();
+
+        try {
+            return signingKeyId + "." + encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(signingKeyId, payload));
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private byte[] sign(String keyId, byte[] payload) throws GeneralSecurityException {
+
+        Map<String, Mac> threadMacs = macs.get();
+        Mac mac = threadMacs.get(keyId);
+
+        if (mac == null) {
+            mac = Mac.getInstance(ALGORITHM);
+            mac.init(keys.get(keyId));
+            threadMacs.put(keyId, mac);
+        }
+
+        return mac.doFinal(payload);
+    }
+}
@@ -0,0 +1,25 @@
+package core.session.factory;
+
+import core.Server;
+import core.session.SessionStore;
+import core.session.SessionStoreMemory;
+import core.session.SessionStoreSigned;
+
+public class SessionStoreFactory {
+
+    public static SessionStore getSessionStore() throws Exception {
+
+        switch (Server.getSessionStoreType()) {
+            case MEMORY:
+                SessionStoreMemory store = new SessionStoreMemory();
+                store.startHousekeeping(
+                    Server.getConfig(Server.Config.SESSION_SNAPSHOT_FILE),
+                    Long.valueOf(Server.getConfig(Server.Config.SESSION_SNAPSHOT_INTERVAL))
+                );
+                return store;
+            case SIGNED: return new SessionStoreSigned(Server.getConfig(Server.Config.SESSION_KEYS));
+            default:
+                throw new Exception("SessionStoreFactory: Specified session store is not available");
+        }
+    }
+}
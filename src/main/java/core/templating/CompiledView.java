@@ -0,0 +1,15 @@
+package core.templating;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * A template compiled into Java at build time by the compileTemplates task
+ *
+ * @author Peibol
+ */
+public interface CompiledView {
+
+    void render(Map<String, Object> model, OutputStream stream) throws IOException;
+}
@@ -1,5 +1,8 @@
 package core.templating;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 import core.ResourceLoader;
@@ -9,8 +12,33 @@ public abstract class TemplateEngine extends ResourceLoader {
     public enum Type{
         DEFAULT,
         TWIG,
+        COMPILED,
         UNKNOWN
     }
 
     public abstract String parseTemplate(String view, Map<String, Object> params);
+
+    /**
+     * Render the view as UTF-8 straight into the stream, engines able to
+     * stream override this to flush the static head of the template before
+     * evaluating the rest
+     *
+     * @param view
+     * @param params
+     * @param stream
+     * @throws IOException
+     */
+    public void render(String view, Map<String, Object> params, OutputStream stream) throws IOException {
+        stream.write(parseTemplate(view, params).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Prepare the view ahead of the first request, engines that cache their
+     * templates override this
+     *
+     * @param view
+     */
+    public void preload(String view) {
+
+    }
 }
@@ -0,0 +1,256 @@
+package core.templating;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of rendered views, keyed by the view and the data used to render it.
+ * Pages are stored encoded, plain and gzipped, and the least recently used
+ * ones are evicted once the cache grows over its size in bytes
+ *
+ * @author Peibol
+ */
+public class TemplateOutputCache {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long capacity;
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * A rendered view, the gzipped body is null when it would not be smaller
+     * than the plain one
+     */
+    public static final class Page {
+
+        private final byte[] body;
+        private final byte[] gzipBody;
+
+        public Page(byte[] body, byte[] gzipBody) {
+            this.body = body;
+            this.gzipBody = gzipBody;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+    }
+
+    private static final class Key {
+
+        private final String view;
+        private final long hash;
+
+        private Key(String view, long hash) {
+            this.view = view;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && view.equals(key.view);
+        }
+
+        @Override
+        public int hashCode() {
+            return view.hashCode() * 31 + Long.hashCode(hash);
+        }
+    }
+
+    private static final class CopyingOutputStream extends FilterOutputStream {
+
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private CopyingOutputStream(OutputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+    }
+
+    private static final class Entry {
+
+        // Copy of the data the page was rendered with, hashes may collide
+        private final Map<String, Object> data;
+        private final Page page;
+        private final long weight;
+
+        private Entry(Map<String, Object> data, Page page) {
+            this.data = data;
+            this.page = page;
+            this.weight = page.body.length + (page.gzipBody != null ? page.gzipBody.length : 0);
+        }
+    }
+
+    /**
+     * @param capacity Maximum size of the stored pages in bytes
+     */
+    public TemplateOutputCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the view rendered with the same data, null on a miss
+     *
+     * @param view
+     * @param data
+     * @return
+     */
+    public synchronized Page get(String view, Map<String, Object> data) {
+
+        Entry entry = entries.get(new Key(view, hash(data)));
+        if (entry != null && entry.data.equals(data != null ? data : Collections.emptyMap())) {
+            hits++;
+            return entry.page;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Render the view into the stream and keep a copy of the output, a
+     * concurrent miss on the same key renders it twice and the last one wins
+     *
+     * @param engine
+     * @param view
+     * @param data
+     * @param stream
+     * @throws IOException
+     */
+    public void render(TemplateEngine engine, String view, Map<String, Object> data, OutputStream stream) throws IOException {
+
+        CopyingOutputStream output = new CopyingOutputStream(stream);
+        engine.render(view, data, output);
+
+        byte[] body = output.copy.toByteArray();
+        Entry entry = new Entry(copy(data), new Page(body, gzip(body)));
+
+        if (entry.weight <= capacity) {
+            synchronized (this) {
+                Entry previous = entries.put(new Key(view, hash(data)), entry);
+                if (previous != null) {
+                    size -= previous.weight;
+                }
+                size += entry.weight;
+                evict();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (size > capacity && it.hasNext()) {
+            size -= it.next().weight;
+            it.remove();
+        }
+    }
+
+    /**
+     * Hash of the data which does not depend on the iteration order of the
+     * maps, so equal data always gives the same key
+     *
+     * @param value
+     * @return
+     */
+    private static long hash(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Map) {
+            long hash = 0;
+            for (Map.Entry<?, ?> pair : ((Map<?, ?>) value).entrySet()) {
+                hash += mix(hash(pair.getKey()) * 31 + hash(pair.getValue()));
+            }
+            return mix(hash + 1);
+        }
+
+        String string = value.toString();
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < string.length(); i++) {
+            hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copy(Map<String, Object> data) {
+        Map<String, Object> copy = new HashMap<>();
+        if (data != null) {
+            for (Map.Entry<String, Object> pair : data.entrySet()) {
+                Object value = pair.getValue();
+                copy.put(pair.getKey(), value instanceof Map ? copy((Map<String, Object>) value) : value);
+            }
+        }
+        return copy;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(body.length / 2 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+                gzip.write(body);
+            }
+            return output.size() < body.length ? output.toByteArray() : null;
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+}
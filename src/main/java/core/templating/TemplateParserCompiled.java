@@ -0,0 +1,52 @@
+package core.templating;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+public class TemplateParserCompiled extends TemplateEngine {
+
+    // Registry generated by the compileTemplates Gradle task
+    private static final String REGISTRY = "core.templating.compiled.CompiledViews";
+
+    private static final Map<String, CompiledView> views = loadViews();
+
+    public String parseTemplate(String view, Map<String, Object> params) {
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        try {
+            render(view, params, stream);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return "";
+        }
+
+        return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public void render(String view, Map<String, Object> params, OutputStream stream) throws IOException {
+
+        CompiledView compiled = views.get(view);
+
+        if (compiled == null) {
+            throw new IllegalArgumentException("Template not compiled: " + view);
+        }
+
+        compiled.render(params != null ? params : Collections.emptyMap(), stream);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, CompiledView> loadViews() {
+
+        try {
+            return (Map<String, CompiledView>) Class.forName(REGISTRY).getField("VIEWS").get(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Compiled templates not found, run the compileTemplates task: " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+}
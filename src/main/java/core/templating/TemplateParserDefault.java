@@ -1,28 +1,158 @@
 package core.templating;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import core.Server;
 
 public class TemplateParserDefault extends TemplateEngine {
 
-    public String parseTemplate(String view, Map<String, Object> params) {
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // Templates are parsed once per view
+    private static final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * A template split into literal text and placeholder names, literals[i]
+     * goes before keys[i] and the last literal closes the template
+     */
+    private static final class CompiledTemplate {
 
-        String template = loadResourceAsString(view);
+        private final String[] literals;
+        private final byte[][] encodedLiterals;
+        private final String[] keys;
+        private final int literalLength;
+        private final long lastModified;
 
-        if (template != null) {
-            if (params != null) {
-                Iterator<Entry<String, Object>> it = params.entrySet().iterator();
-                while (it.hasNext()) {
-                    Map.Entry<String, Object> pair = it.next();
-                    template = template.replaceAll("\\{\\{" + pair.getKey() + "\\}\\}", (String) pair.getValue());
-                    it.remove();
-                }
+        private CompiledTemplate(String[] literals, String[] keys, long lastModified) {
+            this.literals = literals;
+            this.keys = keys;
+            this.lastModified = lastModified;
+
+            int length = 0;
+            this.encodedLiterals = new byte[literals.length][];
+            for (int i = 0; i < literals.length; i++) {
+                length += literals[i].length();
+                encodedLiterals[i] = literals[i].getBytes(StandardCharsets.UTF_8);
             }
+            this.literalLength = length;
+        }
+    }
 
-            return template;
-        } else {
+    public String parseTemplate(String view, Map<String, Object> params) {
+
+        CompiledTemplate template = getTemplate(view);
+
+        if (template == null) {
             return "";
         }
+
+        // Resolve placeholder values first so the buffer is allocated once at its final size
+        String[] values = new String[template.keys.length];
+        int length = template.literalLength;
+
+        for (int i = 0; i < values.length; i++) {
+            Object value = params != null ? params.get(template.keys[i]) : null;
+            values[i] = value != null ? value.toString() : OPEN + template.keys[i] + CLOSE;
+            length += values[i].length();
+        }
+
+        StringBuilder output = new StringBuilder(length);
+
+        for (int i = 0; i < values.length; i++) {
+            output.append(template.literals[i]).append(values[i]);
+        }
+
+        return output.append(template.literals[values.length]).toString();
+    }
+
+    public void render(String view, Map<String, Object> params, OutputStream stream) throws IOException {
+
+        CompiledTemplate template = getTemplate(view);
+
+        if (template == null) {
+            return;
+        }
+
+        // Everything before the first placeholder goes out right away
+        stream.write(template.encodedLiterals[0]);
+        stream.flush();
+
+        for (int i = 0; i < template.keys.length; i++) {
+            Object value = params != null ? params.get(template.keys[i]) : null;
+            String text = value != null ? value.toString() : OPEN + template.keys[i] + CLOSE;
+            stream.write(text.getBytes(StandardCharsets.UTF_8));
+            stream.write(template.encodedLiterals[i + 1]);
+        }
+    }
+
+    public void preload(String view) {
+        getTemplate(view);
+    }
+
+    /**
+     * Get the compiled template from the cache, in debug mode it is compiled
+     * again when the file changed
+     *
+     * @param view
+     * @return
+     */
+    private CompiledTemplate getTemplate(String view) {
+
+        CompiledTemplate template = templates.get(view);
+
+        if (template != null && Server.isDebug() && getResourceLastModified(view) != template.lastModified) {
+            template = null;
+        }
+
+        if (template == null) {
+            template = compile(view);
+            if (template != null) {
+                templates.put(view, template);
+            }
+        }
+
+        return template;
+    }
+
+    private CompiledTemplate compile(String view) {
+
+        long lastModified = getResourceLastModified(view);
+        String source = loadResourceAsString(view);
+
+        if (source == null) {
+            return null;
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        int position = 0;
+
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+
+            if (close < 0) {
+                break;
+            }
+
+            literals.add(source.substring(position, open));
+            keys.add(source.substring(open + OPEN.length(), close));
+            position = close + CLOSE.length();
+        }
+
+        literals.add(source.substring(position));
+
+        return new CompiledTemplate(
+            literals.toArray(new String[literals.size()]),
+            keys.toArray(new String[keys.size()]),
+            lastModified
+        );
     }
 }
@@ -1,19 +1,84 @@
 package core.templating;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jtwig.JtwigModel;
 import org.jtwig.JtwigTemplate;
+import org.jtwig.environment.EnvironmentConfiguration;
+import org.jtwig.environment.EnvironmentConfigurationBuilder;
 
 public class TemplateParserTwig extends TemplateEngine {
 
+    // Built once, building the configuration registers every Jtwig extension,
+    // output is UTF-8 whatever the platform charset is
+    private static final EnvironmentConfiguration configuration = EnvironmentConfigurationBuilder.configuration()
+        .render().withOutputCharset(StandardCharsets.UTF_8).and()
+        .build();
+
+    // Compiled templates keep their environment and parsed tree, they are safe to render concurrently
+    private static final Map<String, JtwigTemplate> templates = new ConcurrentHashMap<>();
+    private static final Map<String, StreamingTemplate> streamingTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * A template split at its first tag, the head is static text sent as is
+     * and the rest is compiled as an inline template, null when there is no
+     * tag at all
+     */
+    private static final class StreamingTemplate {
+
+        private final byte[] head;
+        private final JtwigTemplate rest;
+
+        private StreamingTemplate(byte[] head, JtwigTemplate rest) {
+            this.head = head;
+            this.rest = rest;
+        }
+    }
+
     public String parseTemplate(String view, Map<String, Object> params) {
 
-        JtwigTemplate template = JtwigTemplate.classpathTemplate(view);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        getTemplate(view).render(createModel(params), stream);
+
+        return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public void render(String view, Map<String, Object> params, OutputStream stream) throws IOException {
+
+        StreamingTemplate template = getStreamingTemplate(view);
+
+        // The static head goes out before the model is evaluated
+        stream.write(template.head);
+        stream.flush();
+
+        if (template.rest != null) {
+            template.rest.render(createModel(params), stream);
+        }
+    }
+
+    /**
+     * Jtwig parses lazily, render once with an empty model so the first
+     * request does not pay for parsing
+     */
+    public void preload(String view) {
+
+        try {
+            getTemplate(view).render(JtwigModel.newModel(), new ByteArrayOutputStream());
+            render(view, null, new ByteArrayOutputStream());
+        } catch (Exception e) {
+            System.out.println("Could not preload template " + view + ": " + e.getMessage());
+        }
+    }
+
+    private JtwigModel createModel(Map<String, Object> params) {
+
         JtwigModel model = JtwigModel.newModel();
 
         if (params != null) {
@@ -21,13 +86,55 @@ public class TemplateParserTwig extends TemplateEngine {
             while (it.hasNext()) {
                 Map.Entry<String, Object> pair = it.next();
                 model.with(pair.getKey(), pair.getValue());
-                it.remove();
             }
         }
 
-        OutputStream stream = new ByteArrayOutputStream();
-        template.render(model, stream);
+        return model;
+    }
+
+    private StreamingTemplate getStreamingTemplate(String view) {
+        return streamingTemplates.computeIfAbsent(view, TemplateParserTwig::split);
+    }
+
+    /**
+     * Split the template source at the first output, code or comment tag
+     *
+     * @param view
+     * @return
+     */
+    private static StreamingTemplate split(String view) {
+
+        String source = loadResourceAsString(view);
+
+        if (source == null) {
+            throw new IllegalArgumentException("Template not found: " + view);
+        }
+
+        int tag = -1;
+        for (String open : new String[] { "{{", "{%", "{#" }) {
+            int position = source.indexOf(open);
+            if (position >= 0 && (tag < 0 || position < tag)) {
+                tag = position;
+            }
+        }
+
+        if (tag < 0) {
+            return new StreamingTemplate(source.getBytes(StandardCharsets.UTF_8), null);
+        }
+
+        // A whitespace control tag trims the text before it
+        String head = source.substring(0, tag);
+        if (source.startsWith("-", tag + 2)) {
+            head = head.replaceAll("\\s+$", "");
+        }
+
+        return new StreamingTemplate(
+            head.getBytes(StandardCharsets.UTF_8),
+            JtwigTemplate.inlineTemplate(source.substring(tag), configuration)
+        );
+    }
 
-        return stream.toString();
+    private JtwigTemplate getTemplate(String view) {
+        return templates.computeIfAbsent(view, key -> JtwigTemplate.classpathTemplate(key, configuration));
     }
 }
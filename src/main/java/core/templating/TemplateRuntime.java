@@ -0,0 +1,209 @@
+package core.templating;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers called by the compiled views, they follow the Jtwig semantics for
+ * the subset of Twig supported by the template compiler
+ *
+ * @author Peibol
+ */
+public final class TemplateRuntime {
+
+    private TemplateRuntime() {
+
+    }
+
+    public static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void write(OutputStream stream, Object value) throws IOException {
+        if (value != null) {
+            stream.write(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Null, false, zero, the "false" string and empty collections or maps are
+     * false, anything else is true, empty strings included
+     *
+     * @param value
+     * @return
+     */
+    public static boolean isTrue(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue() != 0;
+        }
+        if (value instanceof CharSequence) {
+            return !"false".equals(value.toString());
+        }
+        if (value instanceof Collection) {
+            return !((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return !((Map<?, ?>) value).isEmpty();
+        }
+        if (value.getClass().isArray()) {
+            return Array.getLength(value) > 0;
+        }
+        return true;
+    }
+
+    public static int length(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        }
+        if (value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return 1;
+    }
+
+    /**
+     * Values that read as numbers, null included, are compared by value and
+     * anything else by its text
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public static boolean equal(Object a, Object b) {
+        return compare(a, b) == 0;
+    }
+
+    public static int compare(Object a, Object b) {
+        BigDecimal numberA = toNumber(a);
+        BigDecimal numberB = toNumber(b);
+        if (numberA != null && numberB != null) {
+            return numberA.compareTo(numberB);
+        }
+        return toText(a).compareTo(toText(b));
+    }
+
+    public static Object attribute(Object value, String name) {
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).get(name);
+        }
+        return null;
+    }
+
+    /**
+     * Key and value pairs to iterate, maps give their entries and lists or
+     * arrays their positions
+     *
+     * @param value
+     * @return
+     */
+    public static Iterable<Map.Entry<Object, Object>> entries(Object value) {
+
+        if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> map = (Map<Object, Object>) value;
+            return map.entrySet();
+        }
+
+        List<Map.Entry<Object, Object>> entries = new ArrayList<>();
+
+        if (value instanceof Iterable) {
+            int i = 0;
+            for (Object item : (Iterable<?>) value) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(i++, item));
+            }
+        } else if (value != null && value.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(value); i++) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(i, Array.get(value, i)));
+            }
+        } else if (value == null) {
+            return Collections.emptyList();
+        } else {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(0, value));
+        }
+
+        return entries;
+    }
+
+    private static BigDecimal toNumber(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString());
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        if (value instanceof CharSequence && isNumber(value.toString())) {
+            return new BigDecimal(value.toString());
+        }
+        return null;
+    }
+
+    // Checked up front, exceptions from BigDecimal would cost more than the render
+    private static boolean isNumber(String text) {
+        int i = 0;
+        int length = text.length();
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < length && Character.isDigit(text.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && text.charAt(i) == '.') {
+            i++;
+            while (i < length && Character.isDigit(text.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits > 0 && i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                i++;
+            }
+            int exponent = 0;
+            while (i < length && Character.isDigit(text.charAt(i))) {
+                i++;
+                exponent++;
+            }
+            if (exponent == 0) {
+                return false;
+            }
+        }
+        return digits > 0 && i == length;
+    }
+
+    private static String toText(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
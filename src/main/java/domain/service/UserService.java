@@ -1,5 +1,6 @@
 package domain.service;
 
+import domain.contract.entity.RoleObject;
 import domain.contract.repository.IRoleRepository;
 import domain.contract.repository.IUserRepository;
 
@@ -72,9 +73,19 @@ public class UserService {
     public boolean isUserAllowedIntoPage(Integer uid, Integer page) {
 
         User user = new User(uid);
-        Role[] roles = roleRepository.getRolesByUser(user);
+        return areRolesAllowedIntoPage(roleRepository.getRolesByUser(user), page);
+    }
+
+    /**
+     * Does any of the roles, already known by the caller, give access to the page
+     *
+     * @param roles
+     * @param page
+     * @return
+     */
+    public boolean areRolesAllowedIntoPage(RoleObject[] roles, Integer page) {
 
-        for (Role role : roles) {
+        for (RoleObject role : roles) {
             if ( role.getPage() != null &&
                  role.getPage().matches("page_" + page)) {
                 return true;
@@ -1,5 +1,6 @@
 package domain.usecase.application;
 
+import domain.contract.entity.RoleObject;
 import domain.contract.repository.IRoleRepository;
 import domain.contract.repository.IUserRepository;
 
@@ -21,6 +22,7 @@ public class UsecasePage extends Usecase {
     private Integer refUserId = 0;
     private Integer page = 0;
     private String username = null;
+    private RoleObject[] roles = null;
 
     public void setRefUserId(Integer refUserId) {
         if (refUserId == null) {
@@ -38,6 +40,26 @@ public class UsecasePage extends Usecase {
         this.page = page;
     }
 
+    /**
+     * Provide the user name and roles when the caller already knows them,
+     * the page is then resolved without querying the repositories
+     *
+     * @param username
+     * @param roles
+     */
+    public void setProfile(String username, RoleObject[] roles) {
+        if (username == null) {
+            throw new IllegalArgumentException("username cannot be null");
+        }
+
+        if (roles == null) {
+            throw new IllegalArgumentException("roles cannot be null");
+        }
+
+        this.username = username;
+        this.roles = roles;
+    }
+
     public String getUsername() {
         return username;
     }
@@ -53,6 +75,12 @@ public class UsecasePage extends Usecase {
             throw new IllegalStateException("page not provided");
         }
 
+        if (roles != null) {
+            return service.areRolesAllowedIntoPage(roles, page) ?
+                Result.PAGE_RETRIEVED_SUCCESSFULLY :
+                Result.PAGE_NOT_ALLOWED;
+        }
+
         if (service.isUserAllowedIntoPage(refUserId, page)) {
             username = service.getUserNameByUserId(refUserId);
             return Result.PAGE_RETRIEVED_SUCCESSFULLY;
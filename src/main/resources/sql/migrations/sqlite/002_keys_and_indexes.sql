@@ -0,0 +1,18 @@
+CREATE TABLE user_has_role_keyed (
+	fk_user_id INTEGER NOT NULL,
+	fk_role_id INTEGER NOT NULL,
+	PRIMARY KEY (fk_user_id, fk_role_id)
+) WITHOUT ROWID;
+
+-- Users sharing a name are merged into the one with the lowest id, which keeps the roles of all of them
+INSERT INTO user_has_role_keyed(fk_user_id, fk_role_id) SELECT DISTINCT COALESCE((SELECT MIN(k.user_id) FROM users u JOIN users k ON k.user_name = u.user_name WHERE u.user_id = r.fk_user_id), r.fk_user_id), r.fk_role_id FROM user_has_role r WHERE r.fk_user_id IS NOT NULL AND r.fk_role_id IS NOT NULL;
+
+DROP TABLE user_has_role;
+
+ALTER TABLE user_has_role_keyed RENAME TO user_has_role;
+
+DELETE FROM users WHERE user_id > (SELECT MIN(k.user_id) FROM users k WHERE k.user_name = users.user_name);
+
+CREATE UNIQUE INDEX users_by_name ON users(user_name);
+
+CREATE INDEX user_has_role_by_role ON user_has_role(fk_role_id, fk_user_id);
\ No newline at end of file
@@ -0,0 +1,145 @@
+package adapter.repository.relational;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import core.database.DatabaseRelational;
+import core.database.DatabaseSQLite;
+import core.database.ReplicaSet;
+import core.database.SchemaMigrator;
+import domain.entity.User;
+
+/**
+ * Two SQLite files standing in for a primary and its replica, the replica is
+ * a copy which is never replicated to, so whether a user is found tells which
+ * one the read went to. A third replica can not be opened
+ *
+ * @author Peibol
+ */
+public class RepositoryRelationalReplicaTest {
+
+    private static File primary;
+    private static File replica;
+    private static String missing;
+    private static DatabaseRelational db;
+    private static UserRepositoryRelational users;
+
+    @BeforeClass
+    public static void connect() throws Exception {
+
+        primary = File.createTempFile("primary", ".db");
+        primary.delete();
+        replica = File.createTempFile("replica", ".db");
+        replica.delete();
+        missing = new File(replica.getParentFile(), "missing/replica.db").getPath();
+
+        db = new DatabaseSQLite() {
+            protected String getUrl() { return "jdbc:sqlite:" + primary.getPath(); }
+            protected List<String> getReplicaEndpoints() { return Arrays.asList(missing, replica.getPath()); }
+            protected long getReplicaEjectionTime() { return 60000; }
+            protected int getMinPoolSize() { return 1; }
+            protected int getMaxPoolSize() { return 2; }
+            protected long getPoolTimeout() { return 1000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 16; }
+        };
+
+        assertTrue(db.connect());
+        Files.copy(primary.toPath(), replica.toPath());
+
+        // Only on the replica, as if the primary had lost it
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + replica.getPath()); Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO users(user_name, user_password) VALUES('replica_only', 'pass')");
+        }
+
+        users = new UserRepositoryRelational(db);
+    }
+
+    @AfterClass
+    public static void disconnect() {
+        DatabaseRelational.disconnect();
+        primary.delete();
+        replica.delete();
+    }
+
+    @After
+    public void release() {
+        // Each test is a request of its own
+        DatabaseRelational.release();
+    }
+
+    @Test
+    public void testRead_GoesToReplica() {
+        assertTrue(users.findUser(new User().setUsername("replica_only")));
+        assertEquals(7, users.getAllUsers().length);
+    }
+
+    @Test
+    public void testWrite_GoesToPrimary() {
+
+        assertNotNull(users.insertUser(new User().setUsername("primary_only").setPassword("pass").setRoles(new Integer[] { 2 })));
+        DatabaseRelational.release();
+
+        assertFalse(users.findUser(new User().setUsername("primary_only")));
+    }
+
+    @Test
+    public void testReadAfterWrite_PinnedToPrimary() {
+
+        assertTrue(users.findUser(new User().setUsername("replica_only")));
+
+        Integer uid = users.insertUser(new User().setUsername("pinned").setPassword("pass").setRoles(new Integer[] { 3 }));
+        assertNotNull(uid);
+
+        User pinned = new User(uid);
+        assertTrue(users.findUser(pinned));
+        assertEquals("pinned", pinned.getUsername());
+        assertFalse(users.findUser(new User().setUsername("replica_only")));
+    }
+
+    @Test
+    public void testUnhealthyReplica_Ejected() {
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(users.findUser(new User().setUsername("replica_only")));
+            DatabaseRelational.release();
+        }
+
+        ReplicaSet replicas = DatabaseRelational.getReplicas();
+        assertTrue(replicas.isEjected(missing));
+        assertFalse(replicas.isEjected(replica.getPath()));
+        assertEquals(1, replicas.getEjections());
+        assertEquals(0, replicas.getFallbacks());
+    }
+
+    @Test
+    public void testReplicaBehind_SchemaReadFromPrimary() throws Exception {
+
+        // A replica still catching up with the last migration of a deploy
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + replica.getPath()); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM schema_version WHERE version > 1");
+        }
+
+        // Restart, the migrations already applied to the primary must not run again
+        DatabaseRelational.disconnect();
+        assertTrue(db.connect());
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + primary.getPath()); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            assertEquals(SchemaMigrator.getLatestVersion(), rs.getInt(1));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package adapter.repository.relational;
+
+import org.junit.BeforeClass;
+
+/**
+ * The same load with every write going through the single writer, grouped
+ * into shared commits
+ *
+ * @author Peibol
+ */
+public class RepositoryRelationalStressSingleWriterTest extends RepositoryRelationalStressTest {
+
+    @BeforeClass
+    public static void connect() throws Exception {
+        connect(true);
+    }
+}
@@ -0,0 +1,167 @@
+package adapter.repository.relational;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import core.database.DatabaseRelational;
+import core.database.DatabaseSQLite;
+import core.database.SingleWriter;
+import domain.entity.Role;
+import domain.entity.User;
+
+/**
+ * Many threads sharing the same repositories, each one works on users of its
+ * own and checks it always reads back what it wrote
+ *
+ * @author Peibol
+ */
+public class RepositoryRelationalStressTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 25;
+
+    private static File file;
+    private static DatabaseRelational db;
+
+    @BeforeClass
+    public static void connect() throws Exception {
+        connect(false);
+    }
+
+    protected static void connect(boolean singleWriter) throws Exception {
+
+        file = File.createTempFile("stress", ".db");
+        file.delete();
+
+        db = new DatabaseSQLite() {
+            protected String getUrl() {
+                return "jdbc:sqlite:" + file.getPath();
+            }
+            protected boolean isSingleWriter() { return singleWriter; }
+            protected int getWriterGroupSize() { return THREADS; }
+            protected int getMinPoolSize() { return 1; }
+            protected int getMaxPoolSize() { return 4; }
+            protected long getPoolTimeout() { return 30000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 16; }
+        };
+
+        assertTrue(db.connect());
+    }
+
+    @AfterClass
+    public static void disconnect() {
+        DatabaseRelational.disconnect();
+        file.delete();
+    }
+
+    @After
+    public void release() {
+        // The checks at the end read on the JUnit thread
+        DatabaseRelational.release();
+    }
+
+    @Test
+    public void testSharedRepositories_ConcurrentReadsAndWrites() throws Exception {
+
+        UserRepositoryRelational users = new UserRepositoryRelational(db);
+        RoleRepositoryRelational roles = new RoleRepositoryRelational(db);
+
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        try {
+                            String failure = roundTrip(users, roles, "stress_" + thread + "_" + i, thread % 4 + 1);
+                            if (failure != null) {
+                                failures.add(failure);
+                            }
+                        } finally {
+                            // Connections are bound per thread, as in a request
+                            DatabaseRelational.release();
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.add(e.toString());
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        assertEquals("[]", failures.toString());
+        assertEquals(0, DatabaseRelational.getPool().getBorrowed());
+        assertTrue(DatabaseRelational.getPool().getSize() <= 4);
+        assertEquals(6, users.getAllUsers().length);
+        assertTrue(DatabaseRelational.getPool().getStatementHits() > DatabaseRelational.getPool().getStatementMisses());
+
+        // Every write of the round trips went through the writer
+        SingleWriter writer = DatabaseRelational.getWriter();
+        if (writer != null) {
+            assertTrue(writer.getCommits() >= THREADS * ITERATIONS * 3);
+            assertTrue(writer.getGroups() <= writer.getCommits());
+        }
+    }
+
+    private String roundTrip(UserRepositoryRelational users, RoleRepositoryRelational roles, String name, int roleId) {
+
+        Integer uid = users.insertUser(new User().setUsername(name).setPassword("pass").setRoles(new Integer[] { roleId }));
+        if (uid == null) {
+            return name + " not inserted";
+        }
+
+        User byName = new User().setUsername(name);
+        if (!users.findUser(byName) || !uid.equals(byName.getId())) {
+            return name + " found by name as " + byName.getId() + ", expected " + uid;
+        }
+
+        User byId = new User(uid);
+        if (!users.findUser(byId) || !name.equals(byId.getUsername()) || !Arrays.equals(new Integer[] { roleId }, byId.getRoleIds())) {
+            return name + " found by id as " + byId.getUsername() + " " + Arrays.toString(byId.getRoleIds());
+        }
+
+        Role[] userRoles = roles.getRolesByUser(byId);
+        if (userRoles.length != 1 || userRoles[0].getId() != roleId) {
+            return name + " has roles " + Arrays.toString(userRoles);
+        }
+
+        Integer[] newRoles = new Integer[] { roleId % 4 + 1 };
+        if (!users.updateUser(new User(uid, name, "other", newRoles))) {
+            return name + " not updated";
+        }
+
+        User byNamePass = new User().setUsername(name).setPassword("other");
+        if (!users.findUser(byNamePass) || !uid.equals(byNamePass.getId()) || !Arrays.equals(newRoles, byNamePass.getRoleIds())) {
+            return name + " not found by name and new password";
+        }
+
+        // The id may already belong to a user another thread just inserted
+        User deleted = new User(uid);
+        if (!users.deleteUser(deleted) || users.findUser(deleted) && name.equals(deleted.getUsername())) {
+            return name + " not deleted";
+        }
+
+        return null;
+    }
+}
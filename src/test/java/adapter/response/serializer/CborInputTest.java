@@ -0,0 +1,241 @@
+package adapter.response.serializer;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import adapter.response.model.RoleModel;
+import adapter.response.model.UserModel;
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+
+/**
+ * The CBOR reader against its own writer and against Jackson, which writes
+ * maps and arrays with indefinite lengths, and its behaviour on malformed
+ * input, which must always end in a DecodingException
+ *
+ * @author Peibol
+ */
+public class CborInputTest {
+
+    private static final long[] LONGS = {
+        0, 23, 24, 255, 256, 65535, 65536, 4294967295L, 4294967296L, Long.MAX_VALUE,
+        -1, -24, -25, -256, -257, -65536, -65537, -4294967296L, -4294967297L, Long.MIN_VALUE
+    };
+
+    private static final CBORFactory cbor = new CBORFactory();
+
+    @Test
+    public void testRoundTrip_Values() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CborOutput out = new CborOutput(bytes);
+        for (long value : LONGS) {
+            out.value(value);
+        }
+        out.value("").value("admin é中😀").value(repeat("y", 70000)).nullValue().value(3.0);
+        out.flush();
+
+        CborInput in = new CborInput(bytes.toByteArray());
+        for (long value : LONGS) {
+            assertEquals(value, in.readLong());
+        }
+        assertEquals("", in.readString());
+        assertEquals("admin é中😀", in.readString());
+        assertEquals(repeat("y", 70000), in.readString());
+        assertNull(in.readString());
+        assertEquals(3, in.readLong());
+        assertTrue(in.isFinished());
+    }
+
+    @Test
+    public void testRoundTrip_Collection() throws IOException {
+
+        UserObject[] users = {
+            new UserModel(1, "admin", null, new Integer[] { 1, 2 }),
+            new UserModel(-70000, repeat("é", 300), null, new Integer[] { Integer.MIN_VALUE, Integer.MAX_VALUE }),
+            new UserModel(3, null, null, new Integer[0])
+        };
+        RoleObject[] roles = { new RoleModel(1, "ADMIN", null), new RoleModel(2, "PAGE_1", "page_1") };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UserApiBinarySerializer.writeCollection(users, roles, BinaryFormat.CBOR, bytes);
+
+        CborInput in = new CborInput(bytes.toByteArray());
+        assertEquals(2, in.readMapHeader());
+        assertEquals("users", in.readString());
+        UserObject[] read = UserApiBinarySerializer.readUsers(in);
+        assertEquals("roles", in.readString());
+        RoleObject[] readRoles = UserApiBinarySerializer.readRoles(in);
+        assertTrue(in.isFinished());
+
+        assertEquals(users.length, read.length);
+        for (int i = 0; i < users.length; i++) {
+            assertEquals(users[i].getId(), read[i].getId());
+            assertEquals(users[i].getUsername(), read[i].getUsername());
+            assertArrayEquals(users[i].getRoleIds(), read[i].getRoleIds());
+        }
+        assertEquals(2, readRoles.length);
+        assertEquals("PAGE_1", readRoles[1].getName());
+        assertEquals("page_1", readRoles[1].getPage());
+        assertNull(readRoles[0].getPage());
+    }
+
+    @Test
+    public void testReadByJackson() throws IOException {
+
+        UserObject user = new UserModel(7, "jé 😀", null, new Integer[] { 1, 300 });
+        RoleObject[] roles = { new RoleModel(1, "ADMIN", null) };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UserApiBinarySerializer.writeResource(user, roles, BinaryFormat.CBOR, bytes);
+
+        assertEquals(
+            "{\"user\":{\"id\":7,\"username\":\"jé 😀\",\"roles\":[1,300]},\"roles\":[{\"id\":1,\"name\":\"ADMIN\"}]}",
+            toJson(bytes.toByteArray())
+        );
+
+        for (long value : LONGS) {
+            bytes.reset();
+            new CborOutput(bytes).value(value).flush();
+            try (JsonParser parser = cbor.createParser(bytes.toByteArray())) {
+                parser.nextToken();
+                assertEquals(value, parser.getLongValue());
+            }
+        }
+    }
+
+    @Test
+    public void testReadJackson_IndefiniteLengthsAndUnknownFields() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator out = cbor.createGenerator(bytes)) {
+            out.writeStartObject();
+            out.writeStringField("username", "jé 😀");
+            out.writeFieldName("extra");
+            out.writeStartObject();
+            out.writeFieldName("deep");
+            out.writeStartArray();
+            out.writeNumber(1.5);
+            out.writeBinary(new byte[300]);
+            out.writeBoolean(true);
+            out.writeNull();
+            out.writeEndArray();
+            out.writeEndObject();
+            out.writeStringField("password", "secret");
+            out.writeNullField("id");
+            out.writeFieldName("roles");
+            out.writeStartArray();
+            out.writeNumber(1);
+            out.writeNull();
+            out.writeNumber(2.0);
+            out.writeNumber(100000L);
+            out.writeEndArray();
+            out.writeNumberField("id", 7);
+            out.writeEndObject();
+        }
+
+        CborInput in = new CborInput(bytes.toByteArray());
+        UserModel user = UserApiBinarySerializer.readUser(in);
+
+        assertEquals(Integer.valueOf(7), user.getId());
+        assertEquals("jé 😀", user.getUsername());
+        assertEquals("secret", user.getPassword());
+        assertTrue(Arrays.equals(new Integer[] { 1, null, 2, 100000 }, user.getRoleIds()));
+        assertTrue(in.isFinished());
+    }
+
+    @Test
+    public void testSkip_NestingWithinLimit() throws IOException {
+
+        // {"x": [[[...[0]...]]], "id": 5} nested up to the limit
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[] { (byte) 0xa2, 0x61, 'x' });
+        for (int i = 0; i < BinaryInput.MAX_DEPTH; i++) {
+            bytes.write(0x81);
+        }
+        bytes.write(new byte[] { 0x00, 0x62, 'i', 'd', 0x05 });
+
+        assertEquals(Integer.valueOf(5), UserApiBinarySerializer.readUser(new CborInput(bytes.toByteArray())).getId());
+    }
+
+    @Test
+    public void testMalformed_Rejected() throws IOException {
+
+        ByteArrayOutputStream deep = new ByteArrayOutputStream();
+        deep.write(new byte[] { (byte) 0xa1, 0x61, 'x' });
+        for (int i = 0; i < 100000; i++) {
+            deep.write(0x81);
+        }
+        deep.write(0x00);
+
+        ByteArrayOutputStream deepIndefinite = new ByteArrayOutputStream();
+        deepIndefinite.write(new byte[] { (byte) 0xa1, 0x61, 'x' });
+        for (int i = 0; i < 100000; i++) {
+            deepIndefinite.write(0x9f);
+        }
+
+        byte[][] inputs = {
+            // Empty
+            {},
+            // String longer than the input
+            { (byte) 0xa1, 0x65, 'x' },
+            // Map of unknown size never ended
+            { (byte) 0xbf, 0x61, 'x', 0x01 },
+            // Reserved additional information
+            { 0x1c },
+            { (byte) 0xa1, 0x61, 'x', 0x3d },
+            // Text chunk of an indefinite string which is not text
+            { (byte) 0xa1, 0x68, 'u', 's', 'e', 'r', 'n', 'a', 'm', 'e', 0x7f, 0x01, (byte) 0xff },
+            // Integer out of range and fractional id
+            { (byte) 0xa1, 0x62, 'i', 'd', 0x1a, (byte) 0x80, 0, 0, 0 },
+            { (byte) 0xa1, 0x62, 'i', 'd', (byte) 0xfa, 0x3f, (byte) 0xc0, 0, 0 },
+            // Array claiming more items than a size can hold
+            { (byte) 0xa1, 0x65, 'r', 'o', 'l', 'e', 's', (byte) 0x9b, (byte) 0xff, 0, 0, 0, 0, 0, 0, 0 },
+            // Lengths beyond a long, which must not pass for indefinite ones
+            { (byte) 0xbb, (byte) 0x80, 0, 0, 0, 0, 0, 0, 0, 0x62, 'i', 'd', 0x01, (byte) 0xff },
+            { (byte) 0xa1, 0x65, 'r', 'o', 'l', 'e', 's', (byte) 0x9b, (byte) 0xff, 0, 0, 0, 0, 0, 0, 0, 0x01, (byte) 0xff },
+            // Unknown field skipped with a length past the end
+            { (byte) 0xa1, 0x61, 'x', 0x5a, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff },
+            // Nested too deep to skip
+            deep.toByteArray(),
+            deepIndefinite.toByteArray()
+        };
+
+        for (byte[] input : inputs) {
+            try {
+                UserApiBinarySerializer.readUser(new CborInput(input));
+                fail("Accepted " + Arrays.toString(input));
+            } catch (DecodingException e) {
+                // Expected
+            }
+        }
+    }
+
+    private static String toJson(byte[] data) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonParser parser = cbor.createParser(data); JsonGenerator out = new JsonFactory().createGenerator(json)) {
+            parser.nextToken();
+            out.copyCurrentStructure(parser);
+        }
+        return json.toString();
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(value);
+        }
+        return repeated.toString();
+    }
+}
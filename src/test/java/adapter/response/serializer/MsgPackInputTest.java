@@ -0,0 +1,229 @@
+package adapter.response.serializer;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import adapter.response.model.RoleModel;
+import adapter.response.model.UserModel;
+import domain.contract.entity.RoleObject;
+import domain.contract.entity.UserObject;
+
+/**
+ * The MessagePack reader against its own writer and against msgpack-core,
+ * and its behaviour on malformed input, which must always end in a
+ * DecodingException
+ *
+ * @author Peibol
+ */
+public class MsgPackInputTest {
+
+    private static final long[] LONGS = {
+        0, 127, 128, 255, 256, 32767, 32768, 65535, 65536, 4294967295L, 4294967296L, Long.MAX_VALUE,
+        -1, -32, -33, -128, -129, -32768, -32769, -2147483648L, -2147483649L, Long.MIN_VALUE
+    };
+
+    @Test
+    public void testRoundTrip_Values() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MsgPackOutput out = new MsgPackOutput(bytes);
+        for (long value : LONGS) {
+            out.value(value);
+        }
+        out.value("").value("admin é中😀").value(repeat("y", 40)).value(repeat("y", 300)).value(repeat("y", 70000)).nullValue().value(3.0);
+        out.flush();
+
+        MsgPackInput in = new MsgPackInput(bytes.toByteArray());
+        for (long value : LONGS) {
+            assertEquals(value, in.readLong());
+        }
+        assertEquals("", in.readString());
+        assertEquals("admin é中😀", in.readString());
+        assertEquals(repeat("y", 40), in.readString());
+        assertEquals(repeat("y", 300), in.readString());
+        assertEquals(repeat("y", 70000), in.readString());
+        assertNull(in.readString());
+        assertEquals(3, in.readLong());
+        assertTrue(in.isFinished());
+    }
+
+    @Test
+    public void testRoundTrip_Collection() throws IOException {
+
+        UserObject[] users = new UserObject[20];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new UserModel(i * 1000, "user" + i, null, new Integer[] { i, -i });
+        }
+        RoleObject[] roles = { new RoleModel(1, "ADMIN", null), new RoleModel(2, "PAGE_1", "page_1") };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UserApiBinarySerializer.writeCollection(users, roles, BinaryFormat.MSGPACK, bytes);
+
+        MsgPackInput in = new MsgPackInput(bytes.toByteArray());
+        assertEquals(2, in.readMapHeader());
+        assertEquals("users", in.readString());
+        UserObject[] read = UserApiBinarySerializer.readUsers(in);
+        assertEquals("roles", in.readString());
+        RoleObject[] readRoles = UserApiBinarySerializer.readRoles(in);
+        assertTrue(in.isFinished());
+
+        assertEquals(users.length, read.length);
+        for (int i = 0; i < users.length; i++) {
+            assertEquals(users[i].getId(), read[i].getId());
+            assertEquals(users[i].getUsername(), read[i].getUsername());
+            assertArrayEquals(users[i].getRoleIds(), read[i].getRoleIds());
+        }
+        assertEquals(2, readRoles.length);
+        assertEquals("page_1", readRoles[1].getPage());
+    }
+
+    @Test
+    public void testReadByMsgPackCore() throws IOException {
+
+        // toJson escapes characters outside the BMP, they are covered by the round trips
+        UserObject user = new UserModel(7, "jé 中", null, new Integer[] { 1, 300 });
+        RoleObject[] roles = { new RoleModel(1, "ADMIN", null) };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UserApiBinarySerializer.writeResource(user, roles, BinaryFormat.MSGPACK, bytes);
+
+        try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes.toByteArray())) {
+            assertEquals(
+                "{\"user\":{\"id\":7,\"username\":\"jé 中\",\"roles\":[1,300]},\"roles\":[{\"id\":1,\"name\":\"ADMIN\"}]}",
+                unpacker.unpackValue().toJson()
+            );
+            assertFalse(unpacker.hasNext());
+        }
+
+        // Same bytes as the reference, which also takes the shortest form
+        for (long value : LONGS) {
+            bytes.reset();
+            new MsgPackOutput(bytes).value(value).flush();
+            MessageBufferPacker reference = MessagePack.newDefaultBufferPacker();
+            reference.packLong(value);
+            reference.close();
+            assertArrayEquals(reference.toByteArray(), bytes.toByteArray());
+        }
+    }
+
+    @Test
+    public void testReadMsgPackCore_UnknownTypesSkipped() throws IOException {
+
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packMapHeader(6);
+        packer.packString("x");
+        packer.packExtensionTypeHeader((byte) 1, 20);
+        packer.writePayload(new byte[20]);
+        packer.packString("username");
+        packer.packString(repeat("z", 40));
+        packer.packString("deep");
+        packer.packMapHeader(2);
+        packer.packString("a");
+        packer.packBinaryHeader(3);
+        packer.writePayload(new byte[3]);
+        packer.packString("b");
+        packer.packArrayHeader(3);
+        packer.packDouble(1.5);
+        packer.packFloat(2f);
+        packer.packBoolean(false);
+        packer.packString("id");
+        packer.packInt(-300);
+        packer.packString("roles");
+        packer.packArrayHeader(3);
+        packer.packInt(1);
+        packer.packNil();
+        packer.packDouble(3.0);
+        packer.packString("password");
+        packer.packNil();
+        packer.close();
+
+        MsgPackInput in = new MsgPackInput(packer.toByteArray());
+        UserModel user = UserApiBinarySerializer.readUser(in);
+
+        assertEquals(Integer.valueOf(-300), user.getId());
+        assertEquals(repeat("z", 40), user.getUsername());
+        assertNull(user.getPassword());
+        assertTrue(Arrays.equals(new Integer[] { 1, null, 3 }, user.getRoleIds()));
+        assertTrue(in.isFinished());
+    }
+
+    @Test
+    public void testSkip_NestingWithinLimit() throws IOException {
+
+        // {"x": [[[...[0]...]]], "id": 5} nested up to the limit
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[] { (byte) 0x82, (byte) 0xa1, 'x' });
+        for (int i = 0; i < BinaryInput.MAX_DEPTH; i++) {
+            bytes.write(0x91);
+        }
+        bytes.write(new byte[] { 0x00, (byte) 0xa2, 'i', 'd', 0x05 });
+
+        assertEquals(Integer.valueOf(5), UserApiBinarySerializer.readUser(new MsgPackInput(bytes.toByteArray())).getId());
+    }
+
+    @Test
+    public void testMalformed_Rejected() throws IOException {
+
+        ByteArrayOutputStream deep = new ByteArrayOutputStream();
+        deep.write(new byte[] { (byte) 0x81, (byte) 0xa1, 'x' });
+        for (int i = 0; i < 100000; i++) {
+            deep.write(0x91);
+        }
+        deep.write(0x00);
+
+        ByteArrayOutputStream deepMaps = new ByteArrayOutputStream();
+        deepMaps.write(new byte[] { (byte) 0x81, (byte) 0xa1, 'x' });
+        for (int i = 0; i < 100000; i++) {
+            deepMaps.write(new byte[] { (byte) 0x81, 0x00 });
+        }
+
+        byte[][] inputs = {
+            // Empty
+            {},
+            // String longer than the input
+            { (byte) 0x81, (byte) 0xa5, 'x' },
+            // Map claiming more entries than there are
+            { (byte) 0xdf, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xa1, 'x', 0x01 },
+            // Type never used
+            { (byte) 0xc1 },
+            { (byte) 0x81, (byte) 0xa1, 'x', (byte) 0xc1 },
+            // Not a map
+            { (byte) 0x91, 0x01 },
+            // Integer out of range and fractional id
+            { (byte) 0x81, (byte) 0xa2, 'i', 'd', (byte) 0xce, (byte) 0x80, 0, 0, 0 },
+            { (byte) 0x81, (byte) 0xa2, 'i', 'd', (byte) 0xca, 0x3f, (byte) 0xc0, 0, 0 },
+            // Unsigned 64 bit integer beyond a long
+            { (byte) 0x81, (byte) 0xa2, 'i', 'd', (byte) 0xcf, (byte) 0xff, 0, 0, 0, 0, 0, 0, 0 },
+            // Unknown field skipped with a length past the end
+            { (byte) 0x81, (byte) 0xa1, 'x', (byte) 0xc6, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff },
+            // Nested too deep to skip
+            deep.toByteArray(),
+            deepMaps.toByteArray()
+        };
+
+        for (byte[] input : inputs) {
+            try {
+                UserApiBinarySerializer.readUser(new MsgPackInput(input));
+                fail("Accepted " + Arrays.toString(input));
+            } catch (DecodingException e) {
+                // Expected
+            }
+        }
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(value);
+        }
+        return repeated.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package core.database;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Borrowing and giving back connections to in memory SQLite databases, with
+ * the pool full, with connections gone bad and after the pool is closed
+ *
+ * @author Peibol
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @After
+    public void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testBorrow_TimedOut() throws Exception {
+
+        pool = pool(0, 1, 100, 0);
+        Connection held = pool.borrow();
+
+        try {
+            pool.borrow();
+            fail("Borrowed from a full pool");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("ConnectionPool: Timed out"));
+        }
+
+        assertEquals(1, pool.getWaits());
+        assertEquals(1, pool.getTimeouts());
+        assertTrue(pool.getWaitMillis() >= 100);
+        assertEquals(1, pool.getBorrowed());
+        assertTrue(pool.release(held, false));
+    }
+
+    @Test
+    public void testBorrow_WokenByRelease() throws Exception {
+
+        // A borrow waiting for a connection gets the one given back
+        pool = pool(0, 1, 5000, 0);
+        Connection held = pool.borrow();
+        FutureTask<Connection> waiting = waiting(pool);
+
+        assertTrue(pool.release(held, false));
+        assertSame(held, waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getWaits());
+        assertEquals(0, pool.getTimeouts());
+        assertEquals(2, pool.getBorrows());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void testBorrow_InvalidIdleReplaced() throws Exception {
+
+        pool = pool(1, 2, 1000, 0);
+        Connection broken = pool.borrow();
+        assertTrue(pool.release(broken, false));
+
+        // Dropped while idle, noticed once it has been idle long enough to be validated again
+        broken.close();
+        Thread.sleep(1100);
+
+        Connection conn = pool.borrow();
+        assertNotSame(broken, conn);
+        assertFalse(conn.isClosed());
+        assertEquals(1, pool.getSize());
+        assertEquals(0, pool.getIdle());
+    }
+
+    @Test
+    public void testRelease_BrokenReplenished() throws Exception {
+
+        pool = pool(2, 3, 1000, 0);
+        Connection conn = pool.borrow();
+
+        assertTrue(pool.release(conn, true));
+
+        assertTrue(conn.isClosed());
+        assertEquals(2, pool.getSize());
+        assertEquals(2, pool.getIdle());
+        assertEquals(1, pool.getReconnects());
+
+        // Only connections borrowed from it are taken back
+        assertFalse(pool.release(conn, false));
+        assertFalse(pool.release(DriverManager.getConnection("jdbc:sqlite::memory:"), false));
+    }
+
+    @Test
+    public void testClosed() throws Exception {
+
+        pool = pool(1, 2, 10000, 0);
+        Connection held = pool.borrow();
+        Connection other = pool.borrow();
+        FutureTask<Connection> waiting = waiting(pool);
+
+        pool.close();
+
+        // The waiting borrow gives up right away instead of timing out
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("Borrowed from a closed pool");
+        } catch (ExecutionException e) {
+            assertEquals("ConnectionPool: Pool closed", e.getCause().getMessage());
+        }
+        try {
+            pool.borrow();
+            fail("Borrowed from a closed pool");
+        } catch (SQLException e) {
+            assertEquals("ConnectionPool: Pool closed", e.getMessage());
+        }
+
+        // Connections given back afterwards are closed
+        assertTrue(pool.release(held, false));
+        assertTrue(pool.release(other, true));
+        assertTrue(held.isClosed());
+        assertTrue(other.isClosed());
+        assertEquals(0, pool.getSize());
+        assertEquals(0, pool.getIdle());
+        assertEquals(0, pool.getBorrowed());
+    }
+
+    @Test
+    public void testLeak_ReportedOnce() throws Exception {
+
+        pool = pool(0, 1, 1000, 50);
+        Connection conn = pool.borrow();
+
+        for (int i = 0; i < 100 && pool.getLeaks() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, pool.getLeaks());
+
+        Thread.sleep(200);
+        assertEquals(1, pool.getLeaks());
+
+        // Borrowed again the clock starts over
+        assertTrue(pool.release(conn, false));
+        conn = pool.borrow();
+        for (int i = 0; i < 100 && pool.getLeaks() == 1; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, pool.getLeaks());
+        assertTrue(pool.release(conn, false));
+    }
+
+    private static ConnectionPool pool(int minSize, int maxSize, long timeoutMillis, long leakThresholdMillis) throws SQLException {
+        return new ConnectionPool(() -> DriverManager.getConnection("jdbc:sqlite::memory:"), minSize, maxSize, timeoutMillis, leakThresholdMillis, 0);
+    }
+
+    /**
+     * Borrow on a thread of its own, returning once it waits for a connection
+     *
+     * @param pool
+     * @return
+     * @throws InterruptedException
+     */
+    private static FutureTask<Connection> waiting(ConnectionPool pool) throws InterruptedException {
+
+        FutureTask<Connection> future = new FutureTask<>(pool::borrow);
+        Thread thread = new Thread(future);
+        thread.start();
+
+        while (thread.getState() != Thread.State.TIMED_WAITING && !future.isDone()) {
+            Thread.sleep(5);
+        }
+        return future;
+    }
+}
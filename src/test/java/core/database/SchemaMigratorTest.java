@@ -0,0 +1,115 @@
+package core.database;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Upgrades of a database left at version 1, as the old dump created it
+ *
+ * @author Peibol
+ */
+public class SchemaMigratorTest {
+
+    private File file;
+    private DatabaseRelational db;
+
+    @Before
+    public void connect() throws Exception {
+
+        file = File.createTempFile("migrator", ".db");
+        file.delete();
+
+        db = new DatabaseSQLite() {
+            protected String getUrl() { return "jdbc:sqlite:" + file.getPath(); }
+            protected boolean setUp() throws Exception { return new SchemaMigrator(this, getDialect()).migrate(1); }
+            protected int getMinPoolSize() { return 1; }
+            protected int getMaxPoolSize() { return 2; }
+            protected long getPoolTimeout() { return 1000; }
+            protected long getPoolLeakThreshold() { return 0; }
+            protected int getStatementCacheSize() { return 16; }
+        };
+
+        assertTrue(db.connect());
+    }
+
+    @After
+    public void disconnect() {
+        DatabaseRelational.disconnect();
+        file.delete();
+    }
+
+    @Test
+    public void testUpgrade_DuplicateNamesMerged() throws Exception {
+
+        // Nothing kept the names unique before version 2
+        execute(
+            "INSERT INTO users(user_id, user_name, user_password) VALUES(10, 'user1', 'second')",
+            "INSERT INTO users(user_id, user_name, user_password) VALUES(11, 'user1', 'third')",
+            "INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(10, 3)",
+            "INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(11, 2)",
+            "INSERT INTO user_has_role(fk_user_id, fk_role_id) VALUES(11, 4)"
+        );
+
+        assertTrue(new SchemaMigrator(db, "sqlite").migrate());
+        assertEquals(SchemaMigrator.getLatestVersion(), new SchemaMigrator(db, "sqlite").getVersion());
+        DatabaseRelational.release();
+
+        // The first one stays, with the roles of all of them
+        assertEquals(Arrays.asList("2 user1 f0578f1e7174b1a41c4ea8c6e17f7a8a3b88c92a"), query("SELECT user_id, user_name, user_password FROM users WHERE user_name = 'user1'"));
+        assertEquals(Arrays.asList("2 2", "2 3", "2 4"), query("SELECT fk_user_id, fk_role_id FROM user_has_role WHERE fk_user_id IN (2, 10, 11) ORDER BY fk_role_id"));
+        assertEquals(Arrays.asList("6"), query("SELECT COUNT(*) FROM users"));
+
+        try {
+            execute("INSERT INTO users(user_name, user_password) VALUES('user1', 'again')");
+            fail("Duplicate name accepted");
+        } catch (SQLException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testUpgrade_RolesKept() throws Exception {
+
+        assertTrue(new SchemaMigrator(db, "sqlite").migrate());
+        DatabaseRelational.release();
+
+        assertEquals(Arrays.asList("6"), query("SELECT COUNT(*) FROM users"));
+        assertEquals(Arrays.asList("10"), query("SELECT COUNT(*) FROM user_has_role"));
+    }
+
+    private void execute(String... statements) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath()); Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    private List<String> query(String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath()); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columns; i++) {
+                    row.append(i > 1 ? " " : "").append(rs.getString(i));
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+}
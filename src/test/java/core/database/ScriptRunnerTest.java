@@ -0,0 +1,174 @@
+package core.database;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Folding and batching of inserts, checked on the statements reaching an in
+ * memory SQLite database and on the rows they leave behind
+ *
+ * @author Peibol
+ */
+public class ScriptRunnerTest {
+
+    private Connection conn;
+    private Statement stmt;
+
+    // Statements as sent, batches are recorded when added
+    private final List<String> sent = new ArrayList<>();
+
+    @Before
+    public void connect() throws SQLException {
+
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement real = conn.createStatement();
+        real.execute("CREATE TABLE t (a INTEGER PRIMARY KEY, b TEXT)");
+        real.execute("CREATE TABLE u (a INTEGER PRIMARY KEY, b TEXT)");
+
+        stmt = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { Statement.class }, (proxy, method, args) -> {
+            if (method.getName().equals("addBatch") || method.getName().equals("execute")) {
+                sent.add((String) args[0]);
+            }
+            try {
+                return method.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    @After
+    public void disconnect() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testFolded_SameTableAndColumns() throws SQLException {
+
+        run(
+            "INSERT INTO t(a, b) VALUES (1, 'x;y')",
+            "INSERT INTO t(a, b) VALUES(2, 'it''s')",
+            "INSERT INTO t(a, b) VALUES (3, ')'), (4, '(')"
+        );
+
+        assertEquals(Arrays.asList("INSERT INTO t(a, b) VALUES (1, 'x;y'),(2, 'it''s'),(3, ')'), (4, '(')"), sent);
+        assertEquals(Arrays.asList("1 x;y", "2 it's", "3 )", "4 ("), rows("t"));
+    }
+
+    @Test
+    public void testFolded_UpToRowsPerInsert() throws SQLException {
+
+        String[] inserts = new String[ScriptRunner.ROWS_PER_INSERT * 2 + 1];
+        for (int i = 0; i < inserts.length; i++) {
+            inserts[i] = "INSERT INTO t(a, b) VALUES (" + i + ", 'r" + i + "')";
+        }
+        run(inserts);
+
+        assertEquals(3, sent.size());
+        assertEquals(inserts.length, rows("t").size());
+    }
+
+    @Test
+    public void testNotFolded_DifferentColumnsOrTables() throws SQLException {
+
+        run(
+            "INSERT INTO t(a, b) VALUES (1, 'x')",
+            "INSERT INTO t(b, a) VALUES ('y', 2)",
+            "INSERT INTO t VALUES (3, 'z')",
+            "INSERT INTO u(a, b) VALUES (1, 'w')",
+            "insert into t(a, b) values (4, 'v')"
+        );
+
+        assertEquals(5, sent.size());
+        assertEquals(Arrays.asList("1 x", "2 y", "3 z", "4 v"), rows("t"));
+        assertEquals(Arrays.asList("1 w"), rows("u"));
+    }
+
+    @Test
+    public void testNotFolded_TrailingClause() throws SQLException {
+
+        run(
+            "INSERT INTO t(a, b) VALUES (1, 'x')",
+            "INSERT INTO t(a, b) VALUES (1, 'y') ON CONFLICT(a) DO UPDATE SET b = excluded.b",
+            "INSERT INTO t(a, b) VALUES (2, 'z') ON CONFLICT(a) DO UPDATE SET b = 'not (folded)'",
+            "INSERT INTO t(a, b) VALUES (3, 'w')"
+        );
+
+        assertEquals(4, sent.size());
+        assertEquals(Arrays.asList("1 y", "2 z", "3 w"), rows("t"));
+    }
+
+    @Test
+    public void testNotFolded_OtherStatementsInOrder() throws SQLException {
+
+        run(
+            "INSERT INTO t(a, b) VALUES (1, 'x')",
+            "INSERT INTO t(a, b) VALUES (2, 'y')",
+            "UPDATE t SET b = b || '!' WHERE a = 2",
+            "INSERT INTO t(a, b) SELECT 3, b FROM t WHERE a = 2",
+            "INSERT INTO t(a, b) VALUES (4, 'z')"
+        );
+
+        assertEquals(
+            Arrays.asList(
+                "INSERT INTO t(a, b) VALUES (1, 'x'),(2, 'y')",
+                "UPDATE t SET b = b || '!' WHERE a = 2",
+                "INSERT INTO t(a, b) SELECT 3, b FROM t WHERE a = 2",
+                "INSERT INTO t(a, b) VALUES (4, 'z')"
+            ),
+            sent
+        );
+        assertEquals(Arrays.asList("1 x", "2 y!", "3 y!", "4 z"), rows("t"));
+    }
+
+    @Test
+    public void testBackslashEscapes_QuoteNotClosing() throws SQLException {
+
+        for (String insert : new String[] { "INSERT INTO t(a, b) VALUES (1, 'a\\') x')", "INSERT INTO t(a, b) VALUES (1, \"a\\\") x\")" }) {
+            sent.clear();
+
+            // As MySQL reads it the escaped quote does not close the string, the
+            // row is held to be folded with the next ones
+            new ScriptRunner(stmt, true).run(insert);
+            assertTrue(sent.isEmpty());
+
+            // Otherwise something follows the row and it is batched on its own
+            new ScriptRunner(stmt, false).run(insert);
+            assertEquals(Arrays.asList(insert), sent);
+
+            stmt.clearBatch();
+        }
+    }
+
+    private void run(String... statements) throws SQLException {
+        ScriptRunner runner = new ScriptRunner(stmt, false);
+        for (String sql : statements) {
+            runner.run(sql);
+        }
+        runner.flush();
+    }
+
+    private List<String> rows(String table) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement query = conn.createStatement(); ResultSet result = query.executeQuery("SELECT a, b FROM " + table + " ORDER BY a")) {
+            while (result.next()) {
+                rows.add(result.getInt(1) + " " + result.getString(2));
+            }
+        }
+        return rows;
+    }
+}
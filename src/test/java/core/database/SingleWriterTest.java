@@ -0,0 +1,209 @@
+package core.database;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Groups of write transactions sharing a commit, on an in memory SQLite
+ * database whose statements can be made to fail or to take their time
+ *
+ * @author Peibol
+ */
+public class SingleWriterTest {
+
+    private Connection real;
+    private SingleWriter writer;
+
+    // Statement made to fail and statement made to wait, once each
+    private volatile String failing = null;
+    private volatile String delayed = null;
+    private volatile long delay = 0;
+
+    @Before
+    public void connect() throws SQLException {
+
+        real = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = real.createStatement()) {
+            stmt.execute("CREATE TABLE t (a INTEGER PRIMARY KEY)");
+        }
+
+        Connection conn = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+            Object result = invoke(real, method, args);
+            if (method.getName().equals("createStatement")) {
+                Statement stmt = (Statement) result;
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { Statement.class }, (p, m, a) -> {
+                    if (m.getName().equals("execute")) {
+                        if (a[0].equals(failing)) {
+                            failing = null;
+                            throw new SQLException("Failed " + a[0]);
+                        }
+                        if (a[0].equals(delayed)) {
+                            delayed = null;
+                            Thread.sleep(delay);
+                        }
+                    }
+                    return invoke(stmt, m, a);
+                });
+            }
+            return result;
+        });
+
+        writer = new SingleWriter(conn, 0, 10);
+    }
+
+    @After
+    public void disconnect() {
+        writer.close();
+    }
+
+    @Test
+    public void testGroup_RollbackInBetween() throws Exception {
+
+        SingleWriter.Transaction first = writer.begin(1000);
+
+        // Both queue up while the first one holds the connection
+        FutureTask<Boolean> second = start(() -> {
+            SingleWriter.Transaction transaction = writer.begin(5000);
+            insert(transaction, 2);
+            return writer.end(transaction, false);
+        });
+        FutureTask<Boolean> third = start(() -> {
+            SingleWriter.Transaction transaction = writer.begin(5000);
+            insert(transaction, 3);
+            return writer.end(transaction, true);
+        });
+
+        insert(first, 1);
+        assertTrue(writer.end(first, true));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertTrue(third.get(5, TimeUnit.SECONDS));
+
+        // The rollback only undid its own insert, the others share a commit
+        assertEquals(Arrays.asList(1, 3), rows());
+        assertEquals(1, writer.getGroups());
+        assertEquals(2, writer.getCommits());
+        assertEquals(1, writer.getRollbacks());
+    }
+
+    @Test
+    public void testBegin_TimedOutDuringHandOver() throws Exception {
+
+        SingleWriter.Transaction first = writer.begin(1000);
+
+        // The savepoint for the second one takes longer than it is willing to wait
+        FutureTask<Boolean> second = start(() -> {
+            try {
+                writer.begin(100);
+                return false;
+            } catch (SQLException e) {
+                return e.getMessage().startsWith("SingleWriter: Timed out");
+            }
+        });
+        delayed = "SAVEPOINT write";
+        delay = 500;
+
+        insert(first, 1);
+        assertTrue(writer.end(first, true));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+
+        // Skipped without leaving its savepoint open, the writer carries on
+        SingleWriter.Transaction next = writer.begin(1000);
+        insert(next, 2);
+        assertTrue(writer.end(next, true));
+
+        assertEquals(Arrays.asList(1, 2), rows());
+        assertEquals(2, writer.getGroups());
+        assertEquals(2, writer.getCommits());
+    }
+
+    @Test
+    public void testGroup_FailedCommit() throws Exception {
+
+        SingleWriter.Transaction first = writer.begin(1000);
+
+        FutureTask<Boolean> second = start(() -> {
+            SingleWriter.Transaction transaction = writer.begin(5000);
+            insert(transaction, 2);
+            return writer.end(transaction, true);
+        });
+
+        failing = "COMMIT";
+        insert(first, 1);
+
+        // Every member of the group learns its changes were lost
+        assertFalse(writer.end(first, true));
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(), rows());
+        assertEquals(1, writer.getGroups());
+        assertEquals(0, writer.getCommits());
+
+        // The next group starts from a clean transaction
+        SingleWriter.Transaction next = writer.begin(1000);
+        insert(next, 3);
+        assertTrue(writer.end(next, true));
+        assertEquals(Arrays.asList(3), rows());
+    }
+
+    /**
+     * Run the task on a thread of its own, returning once it waits for the
+     * writer
+     *
+     * @param task
+     * @return
+     * @throws InterruptedException
+     */
+    private static FutureTask<Boolean> start(Callable<Boolean> task) throws InterruptedException {
+
+        FutureTask<Boolean> future = new FutureTask<>(task);
+        Thread thread = new Thread(future);
+        thread.start();
+
+        while (thread.getState() != Thread.State.TIMED_WAITING && !future.isDone()) {
+            Thread.sleep(5);
+        }
+        return future;
+    }
+
+    private static void insert(SingleWriter.Transaction transaction, int value) throws SQLException {
+        try (Statement stmt = transaction.getConnection().createStatement()) {
+            stmt.execute("INSERT INTO t(a) VALUES(" + value + ")");
+        }
+    }
+
+    private List<Integer> rows() throws SQLException {
+        List<Integer> rows = new ArrayList<>();
+        try (Statement stmt = real.createStatement(); ResultSet rs = stmt.executeQuery("SELECT a FROM t ORDER BY a")) {
+            while (rs.next()) {
+                rows.add(rs.getInt(1));
+            }
+        }
+        return rows;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
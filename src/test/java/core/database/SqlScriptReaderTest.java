@@ -0,0 +1,153 @@
+package core.database;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Splitting scripts into statements, semicolons only end a statement outside
+ * of strings, quoted identifiers and comments
+ *
+ * @author Peibol
+ */
+public class SqlScriptReaderTest {
+
+    @Test
+    public void testSemicolons_InStringsAndIdentifiers() throws IOException {
+
+        assertEquals(
+            Arrays.asList(
+                "INSERT INTO t(v) VALUES('a;b')",
+                "INSERT INTO t(v) VALUES(\"c;d\")",
+                "SELECT `e;f` FROM t"
+            ),
+            read("INSERT INTO t(v) VALUES('a;b');\nINSERT INTO t(v) VALUES(\"c;d\");SELECT `e;f` FROM t;", false)
+        );
+    }
+
+    @Test
+    public void testSemicolons_InComments() throws IOException {
+
+        // A comment leaves a space behind, so it still separates tokens
+        assertEquals(
+            Arrays.asList("SELECT 1", "SELECT 2   - 1", "SELECT 3"),
+            read("-- first; of three\nSELECT 1; /* second;\n spans lines */ SELECT 2 -- trailing; comment\n - 1;\nSELECT 3 /* ; */", false)
+        );
+    }
+
+    @Test
+    public void testComments_MySQLKept() throws IOException {
+
+        assertEquals(
+            Arrays.asList("CREATE TABLE t (id INTEGER /*!40101 AUTO_INCREMENT; */)", "SELECT 1 - 2 / 3"),
+            read("CREATE TABLE t (id INTEGER /*!40101 AUTO_INCREMENT; */);\nSELECT 1 - 2 / 3", false)
+        );
+    }
+
+    @Test
+    public void testComments_MySQLDoubleDash() throws IOException {
+
+        // A space or control character has to follow the dashes
+        assertEquals(
+            Arrays.asList("SELECT 1--1", "SELECT 2  FROM t", "SELECT 3 - 1", "SELECT 4"),
+            read("SELECT 1--1;SELECT 2 --\tx;\nFROM t;SELECT 3 ---\n1;SELECT 4 --", true)
+        );
+
+        // Otherwise any double dash starts one
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"), read("SELECT 1--1;\n;SELECT 2", false));
+    }
+
+    @Test
+    public void testQuotes_Doubled() throws IOException {
+
+        assertEquals(
+            Arrays.asList("INSERT INTO t(v) VALUES('it''s; fine', \"say \"\"hi;\"\"\")", "SELECT ''"),
+            read("INSERT INTO t(v) VALUES('it''s; fine', \"say \"\"hi;\"\"\"); SELECT ''", false)
+        );
+    }
+
+    @Test
+    public void testQuotes_BackslashEscapes() throws IOException {
+
+        assertEquals(
+            Arrays.asList("INSERT INTO t(v) VALUES('a\\';b')", "INSERT INTO t(v) VALUES('c\\\\')"),
+            read("INSERT INTO t(v) VALUES('a\\';b');INSERT INTO t(v) VALUES('c\\\\');", true)
+        );
+
+        // Double quoted strings too, but not identifiers
+        assertEquals(
+            Arrays.asList("INSERT INTO t(v) VALUES(\"a\\\";b\")", "SELECT `c\\`", "SELECT 1"),
+            read("INSERT INTO t(v) VALUES(\"a\\\";b\");SELECT `c\\`;SELECT 1", true)
+        );
+
+        // Without them the backslash is a plain character and ends nothing
+        assertEquals(
+            Arrays.asList("INSERT INTO t(v) VALUES('c\\')", "SELECT 1"),
+            read("INSERT INTO t(v) VALUES('c\\');SELECT 1", false)
+        );
+    }
+
+    @Test
+    public void testEmptyStatements_Skipped() throws IOException {
+
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"), read(";; SELECT 1;;\n ; -- only a comment\n;SELECT 2;  \n", false));
+        assertEquals(Arrays.asList(), read("  -- nothing\n /* at all */ ", false));
+    }
+
+    @Test
+    public void testStatements_LongerThanTheBuffer() throws IOException {
+
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            value.append(i % 10 == 0 ? ';' : 'x');
+        }
+
+        List<String> statements = read("INSERT INTO t(v) VALUES('" + value + "');SELECT 1;", false);
+
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO t(v) VALUES('" + value + "')", statements.get(0));
+    }
+
+    @Test
+    public void testUnterminated_Rejected() {
+
+        String[] scripts = {
+            "SELECT 'open;",
+            "SELECT \"open",
+            "SELECT `open",
+            "SELECT 'it''s",
+            "SELECT 1 /* open; comment",
+            "SELECT 1 /*! open",
+            // The escaped quote does not close the string
+            "SELECT 'a\\'",
+            "SELECT \"a\\\""
+        };
+
+        for (String script : scripts) {
+            try {
+                read(script, true);
+                fail("Accepted " + script);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("SqlScriptReader: Unterminated"));
+            }
+        }
+    }
+
+    private static List<String> read(String script, boolean backslashEscapes) throws IOException {
+
+        List<String> statements = new ArrayList<>();
+        try (SqlScriptReader reader = new SqlScriptReader(new StringReader(script), backslashEscapes)) {
+            String statement;
+            while ((statement = reader.next()) != null) {
+                statements.add(statement);
+            }
+        }
+        return statements;
+    }
+}
@@ -1,10 +1,14 @@
 package domain.usecase.application;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import org.junit.Test;
 
+import domain.contract.entity.RoleObject;
 import domain.usecase.UsecaseTest;
 import org.mockito.InjectMocks;
 
@@ -19,6 +23,9 @@ public class UsecasePageTest<Result extends UsecasePage.Result> extends UsecaseT
 
         when(service.isUserAllowedIntoPage(2, 1)).thenReturn(true);
         when(service.isUserAllowedIntoPage(3, 1)).thenReturn(false);
+
+        when(service.areRolesAllowedIntoPage(new RoleObject[] { role2 }, 1)).thenReturn(true);
+        when(service.areRolesAllowedIntoPage(new RoleObject[] { role3 }, 1)).thenReturn(false);
     }
 
     @Test
@@ -51,4 +58,43 @@ public class UsecasePageTest<Result extends UsecasePage.Result> extends UsecaseT
             fail(e.getMessage());
         }
     }
+
+    @Test
+    public void pageTest_KnownProfile_Success() {
+
+        try {
+            usecase.setRefUserId(2);
+            usecase.setPage(1);
+            usecase.setProfile("user1", new RoleObject[] { role2 });
+
+            assertEquals(Result.PAGE_RETRIEVED_SUCCESSFULLY, usecase.execute());
+            assertEquals("user1", usecase.getUsername());
+
+            verify(service, never()).isUserAllowedIntoPage(2, 1);
+            verify(service, never()).getUserNameByUserId(2);
+            verifyZeroInteractions(userRepository, roleRepository);
+        }
+        catch (Exception e) {
+            e.printStackTrace(System.out);
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void pageTest_KnownProfile_NotAuthorised() {
+
+        try {
+            usecase.setRefUserId(3);
+            usecase.setPage(1);
+            usecase.setProfile("user2", new RoleObject[] { role3 });
+
+            assertEquals(Result.PAGE_NOT_ALLOWED, usecase.execute());
+
+            verifyZeroInteractions(userRepository, roleRepository);
+        }
+        catch (Exception e) {
+            e.printStackTrace(System.out);
+            fail(e.getMessage());
+        }
+    }
 }